@@ -0,0 +1,32 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions.sample;
+
+import android.app.Application;
+
+import pub.devrel.easypermissions.EasyPermissions;
+
+/**
+ * 启动时设置构建时生成的权限表并预热EasyPermissions，第一次申请权限时不再有额外的加载耗时
+ */
+public class SampleApplication extends Application {
+
+  @Override public void onCreate() {
+    super.onCreate();
+    EasyPermissions.setPermissionIndex(GeneratedPermissionIndex.INDEX);
+    EasyPermissions.prewarm(this, MainActivity.class, MainFragment.class);
+  }
+}
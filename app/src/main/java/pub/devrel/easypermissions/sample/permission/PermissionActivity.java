@@ -1,6 +1,7 @@
 package pub.devrel.easypermissions.sample.permission;
 
 import android.content.Intent;
+import android.os.Bundle;
 import android.support.annotation.StringRes;
 import android.support.v4.app.FragmentActivity;
 import android.util.Log;
@@ -10,6 +11,7 @@ import java.util.List;
 
 import pub.devrel.easypermissions.AfterPermissionGranted;
 import pub.devrel.easypermissions.EasyPermissions;
+import pub.devrel.easypermissions.PermissionGroup;
 import pub.devrel.easypermissions.sample.R;
 
 import static pub.devrel.easypermissions.sample.permission.PermissionUtil.*;
@@ -23,6 +25,19 @@ public class PermissionActivity extends FragmentActivity implements EasyPermissi
 
     private static final String NOT_RELOAD_ERROR = "申请了此权限，子类要重载此执行方法";
 
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        // 恢复进程被杀前未返回结果的权限请求
+        EasyPermissions.onRestoreInstanceState(savedInstanceState);
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        EasyPermissions.onSaveInstanceState(outState);
+    }
+
     @Override
     public void onPermissionsGranted(int requestCode, List<String> perms) {
         Log.d(TAG, "onPermissionsGranted:使用注解接受权限被赋予后的处理");
@@ -189,7 +204,7 @@ public class PermissionActivity extends FragmentActivity implements EasyPermissi
      * @param rationaleId 提示语
      * @param perms       所需要权限
      */
-    private void performRequestPermission(@StringRes int rationaleId, int flag, String... perms) {
+    private void performRequestPermission(@StringRes int rationaleId, int flag, PermissionGroup perms) {
         requestPermission(this, getString(rationaleId), flag, perms);
         Toast.makeText(this, R.string.perm_sorry, Toast.LENGTH_SHORT).show();
     }
@@ -6,11 +6,11 @@ import android.support.v4.app.Fragment;
 import android.util.Log;
 import android.widget.Toast;
 
-import java.util.Arrays;
 import java.util.List;
 
 import pub.devrel.easypermissions.AfterPermissionGranted;
 import pub.devrel.easypermissions.EasyPermissions;
+import pub.devrel.easypermissions.PermissionGroup;
 import pub.devrel.easypermissions.sample.R;
 
 import static pub.devrel.easypermissions.sample.permission.PermissionUtil.*;
@@ -186,8 +186,8 @@ public class PermissionFragment extends Fragment implements EasyPermissions.Perm
    * @param rationaleId 提示语
    * @param perms 所需要权限
    */
-  private void performRequestPermission(@StringRes int rationaleId, int flag, String... perms) {
-    Log.d(TAG, "Fragment请求权限：" + Arrays.toString(perms));
+  private void performRequestPermission(@StringRes int rationaleId, int flag, PermissionGroup perms) {
+    Log.d(TAG, "Fragment请求权限：" + perms);
     requestPermission(this, getString(rationaleId), flag, perms);
     Toast.makeText(getActivity(), R.string.perm_sorry, Toast.LENGTH_SHORT).show();
   }
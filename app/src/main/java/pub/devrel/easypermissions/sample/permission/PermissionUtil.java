@@ -5,12 +5,10 @@ import android.os.Build;
 import android.provider.Settings;
 import android.util.Log;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.List;
 
 import pub.devrel.easypermissions.EasyPermissions;
+import pub.devrel.easypermissions.PermissionGroup;
 
 import static android.Manifest.permission.ACCESS_COARSE_LOCATION;
 import static android.Manifest.permission.ACCESS_FINE_LOCATION;
@@ -33,7 +31,7 @@ import static android.Manifest.permission.WRITE_EXTERNAL_STORAGE;
  * ---安卓权限------
  * *
  * *                    *--SYSTEM_ALERT_WINDOW
- * *--Special(只有两个)--需要开启Activity申请
+ * *--Special(见SpecialPermission)--需要开启Activity申请
  * *--WRITE_SETTINGS
  *
  * <href src="http://www.tuicool.com/articles/2Aviya">权限详情</>
@@ -64,55 +62,42 @@ public class PermissionUtil {
   public static final String SYSTEM_ALERT_WINDOW_PERMISSION =
       Settings.ACTION_MANAGE_OVERLAY_PERMISSION;
 
-  public static final String[] CALL_PERMISSION = { CALL_PHONE };
-  public static final String[] CAMERA_PERMISSION = { CAMERA };
-  public static final String[] CONTACTS_PERMISSION = { READ_CONTACTS };
-  public static final String[] LOCATION_PERMISSION =
-      { ACCESS_COARSE_LOCATION, ACCESS_FINE_LOCATION };
+  public static final PermissionGroup CALL_PERMISSION = PermissionGroup.of(CALL_PHONE);
+  public static final PermissionGroup CAMERA_PERMISSION = PermissionGroup.of(CAMERA);
+  public static final PermissionGroup CONTACTS_PERMISSION = PermissionGroup.of(READ_CONTACTS);
+  public static final PermissionGroup LOCATION_PERMISSION =
+      PermissionGroup.of(ACCESS_COARSE_LOCATION, ACCESS_FINE_LOCATION);
 
-
-  // 自动升级
-  public static String[] AUTOUPDATE_PERMISSION;
   /**
-   * READ_PHONE_STATE权限，API 16才有的
+   * READ_EXTERNAL_STORAGE权限，API 16才有的
    */
-  static {
-    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-      AUTOUPDATE_PERMISSION = new String[] { READ_EXTERNAL_STORAGE, WRITE_EXTERNAL_STORAGE };
-    } else {
-      AUTOUPDATE_PERMISSION = new String[] { WRITE_EXTERNAL_STORAGE };
-    }
-  }
+  private static final PermissionGroup STORAGE_PERMISSION = PermissionGroup.builder()
+      .add(WRITE_EXTERNAL_STORAGE)
+      .addIfSdkAtLeast(Build.VERSION_CODES.JELLY_BEAN, READ_EXTERNAL_STORAGE)
+      .build();
+
+  // 自动升级
+  public static final PermissionGroup AUTOUPDATE_PERMISSION = STORAGE_PERMISSION;
 
   // 友盟
-  public static final String[] UMENG_PERMISSION = { READ_PHONE_STATE };
+  public static final PermissionGroup UMENG_PERMISSION = PermissionGroup.of(READ_PHONE_STATE);
   // 百度地图
-  public static final String[] BAIDU_PERMISSION = {
-      READ_PHONE_STATE, WRITE_EXTERNAL_STORAGE, ACCESS_COARSE_LOCATION, ACCESS_FINE_LOCATION,
-      WRITE_SETTING_PERMISSION
-  };
+  public static final PermissionGroup BAIDU_PERMISSION = PermissionGroup.builder()
+      .add(READ_PHONE_STATE, WRITE_EXTERNAL_STORAGE)
+      .add(LOCATION_PERMISSION)
+      .add(WRITE_SETTING_PERMISSION)
+      .build();
   // 极光
-  public static String[] JPUSH_PERMISSION;
-  /**
-   * READ_PHONE_STATE权限，API 16才有的
-   */
-  static {
-    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-      JPUSH_PERMISSION = new String[] {
-              READ_PHONE_STATE, WRITE_EXTERNAL_STORAGE, READ_EXTERNAL_STORAGE, WRITE_SETTING_PERMISSION,
-              SYSTEM_ALERT_WINDOW_PERMISSION
-      };
-    } else {
-      JPUSH_PERMISSION = new String[] {
-              READ_PHONE_STATE, WRITE_EXTERNAL_STORAGE, WRITE_SETTING_PERMISSION,
-              SYSTEM_ALERT_WINDOW_PERMISSION
-      };
-    }
-  }
+  public static final PermissionGroup JPUSH_PERMISSION = PermissionGroup.builder()
+      .add(READ_PHONE_STATE)
+      .add(STORAGE_PERMISSION)
+      .add(WRITE_SETTING_PERMISSION, SYSTEM_ALERT_WINDOW_PERMISSION)
+      .build();
 
   // QQ语音
-  public static final String[] QQ_PERMISSION =
-      { CAMERA, ACCESS_COARSE_LOCATION, CALL_PHONE, READ_PHONE_STATE, WRITE_EXTERNAL_STORAGE };
+  public static final PermissionGroup QQ_PERMISSION =
+      PermissionGroup.of(CAMERA, ACCESS_COARSE_LOCATION, CALL_PHONE, READ_PHONE_STATE,
+          WRITE_EXTERNAL_STORAGE);
 
 
   /**
@@ -125,60 +110,34 @@ public class PermissionUtil {
   }
 
   /**
-   * 请求权限。调用此方法前，最好调用{@link #hasPermissions(Context, String...)},没有权限时，再申请
+   * 是否有{@code group}中的全部权限，按位检查，不比较字符串
    */
-  public static void requestPermission(final Object object, String rationale, final int requestCode,
-      String... perms) {
-    if (perms == null || perms.length < 0) {
-      throw new IllegalArgumentException("PermissionUtil#requestPermission,必须要填写权限");
-    }
-
-    // 1. 已有的权限，不必再次请求
-    perms = EasyPermissions.excludeHadPermissions(object, perms);
-    Log.d(TAG, "过滤完已有权限:" + Arrays.toString(perms));
-    if (perms.length < 0) {
-      throw new IllegalArgumentException(
-          "PermissionUtil#requestPermission,已有所需权限，请先调用#hasPermissions可好");
-    }
-
-    // 2. 过滤掉特殊权限
-    String[] dangerPermissions = excludeSpecialPermissions(perms);
-    Log.d(TAG, "过滤完特殊权限：" + Arrays.toString(dangerPermissions));
-
-    if (dangerPermissions.length > 0) {// 3. 如果有dangerous权限
-      Log.d(TAG, "执行请求危险权限:" + Arrays.toString(dangerPermissions));
-      EasyPermissions.requestPermissions(object, rationale, requestCode, dangerPermissions);
-    } else {// 4. 如果没有危险权限，就意味着有特殊权限喽
-      for (String perm : perms) {
-        Log.d(TAG, "得到特殊权限：" + perm);
-        EasyPermissions.requestSpecialPermission(object, perm);
-      }
-      /*String specialPermission = getSpecialPermission(perms);
-      LogA.d(TAG, "得到特殊权限：" + specialPermission);
-      if (!TextUtils.isEmpty(specialPermission)) {
-        EasyPermissions.requestSpecialPermission(object, specialPermission);
-      }*/
-    }
+  public static boolean hasPermissions(Context context, PermissionGroup group) {
+    return EasyPermissions.hasPermissions(context, group);
   }
 
   /**
-   * 过滤特殊权限
+   * 请求{@code group}中的权限，已有的权限不会再次请求
    */
-  private static String[] excludeSpecialPermissions(String... perms) {
-    String[] dangerPermissions = {};// 危险权限
-
-    List<String> permsList = new ArrayList(Arrays.asList(perms));
+  public static void requestPermission(Object object, String rationale, int requestCode,
+      PermissionGroup group) {
+    Log.d(TAG, "请求权限:" + group);
+    EasyPermissions.requestPermissions(object, rationale, requestCode, group);
+  }
 
-    Iterator<String> iterator = permsList.iterator();
-    while (iterator.hasNext()) {
-      String perm = iterator.next();
-      if (Settings.ACTION_MANAGE_OVERLAY_PERMISSION.equals(perm)
-          || Settings.ACTION_MANAGE_WRITE_SETTINGS.equals(perm)) {// 如果是特殊权限，则删除
-        iterator.remove();
-      }
+  /**
+   * 请求权限。调用此方法前，最好调用{@link #hasPermissions(Context, String...)},没有权限时，再申请
+   */
+  public static void requestPermission(final Object object, String rationale, final int requestCode,
+      String... perms) {
+    if (perms == null || perms.length < 0) {
+      throw new IllegalArgumentException("PermissionUtil#requestPermission,必须要填写权限");
     }
 
-    return permsList.toArray(dangerPermissions);
+    // 已有的权限不会再次请求，全部已有时直接回调；
+    // 先请求dangerous权限，再依次打开特殊权限的设置页，全部完成后一起回调
+    Log.d(TAG, "请求权限:" + Arrays.toString(perms));
+    EasyPermissions.requestPermissions(object, rationale, requestCode, perms);
   }
 
   /**
@@ -0,0 +1,66 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link AnnotatedMethodCache}的查找，宿主类有10/100/1000个方法.
+ *
+ * cached是命中缓存时的查找，-prof gc下应该没有分配；cold每次先清空缓存，相当于没有缓存时反射扫描宿主类。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AnnotatedMethodCacheBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int methods;
+
+  private Class<?> hostClass;
+  private int requestCode;
+
+  @Setup public void setUp() throws Exception {
+    hostClass = Class.forName("pub.devrel.easypermissions.Host" + methods);
+    requestCode = methods / 10 / 2;// 中间的一个注解方法
+    AnnotatedMethodCache.clear();
+  }
+
+  @Benchmark public Method[] cached() {
+    return AnnotatedMethodCache.getMethods(hostClass, requestCode);
+  }
+
+  @Benchmark public Method[] cold() {
+    AnnotatedMethodCache.clear();
+    return AnnotatedMethodCache.getMethods(hostClass, requestCode);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.support.v4.app.FragmentActivity;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 基准测试用的宿主，授权状态保存在内存中，代替系统的checkSelfPermission和PackageManager
+ */
+public class BenchmarkActivity extends FragmentActivity
+    implements EasyPermissions.PermissionCallbacks {
+
+  public int calls;
+  /** 每次模拟的IPC({@link #checkPermission}、{@link PackageManager#getPackageInfo})消耗的CPU */
+  public long ipcTokens;
+
+  private final Set<String> granted = new HashSet<>();
+  private String[] requested = new String[0];
+
+  public void grant(String... perms) {
+    for (String perm : perms) {
+      granted.add(perm);
+    }
+  }
+
+  public void setRequestedPermissions(String... perms) {
+    requested = perms;
+  }
+
+  @Override public int checkPermission(String permission, int pid, int uid) {
+    Blackhole.consumeCPU(ipcTokens);
+    return granted.contains(permission) ? PackageManager.PERMISSION_GRANTED
+        : PackageManager.PERMISSION_DENIED;
+  }
+
+  @Override public String getPackageName() {
+    return "pub.devrel.easypermissions.benchmark";
+  }
+
+  @Override public PackageManager getPackageManager() {
+    return new PackageManager() {
+      @Override public PackageInfo getPackageInfo(String packageName, int flags) {
+        Blackhole.consumeCPU(ipcTokens);
+        PackageInfo info = new PackageInfo();
+        info.packageName = packageName;
+        info.requestedPermissions = requested.clone();
+        info.requestedPermissionsFlags = new int[requested.length];
+        for (int i = 0; i < requested.length; i++) {
+          if (granted.contains(requested[i])) {
+            info.requestedPermissionsFlags[i] = PackageInfo.REQUESTED_PERMISSION_GRANTED;
+          }
+        }
+        return info;
+      }
+    };
+  }
+
+  @Override public void onPermissionsGranted(int requestCode, List<String> perms) {
+    calls++;
+  }
+
+  @Override public void onPermissionsDenied(int requestCode, List<String> perms) {
+    calls++;
+  }
+
+  @Override public void onRequestPermissionsResult(int requestCode, String[] permissions,
+      int[] grantResults) {
+    EasyPermissions.onRequestPermissionsResult(requestCode, permissions, grantResults, this);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link EasyPermissions#hasPermissions}和{@link EasyPermissions#excludeHadPermissions}，
+ * 一半权限已授权，分别在关闭和打开{@link PermissionStateCache}时测试
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CheckPermissionsBenchmark {
+
+  @Param({ "1", "4", "16" })
+  public int permissionCount;
+
+  @Param({ "false", "true" })
+  public boolean cache;
+
+  private BenchmarkActivity activity;
+  private String[] perms;
+
+  @Setup public void setUp() {
+    perms = Permissions.first(permissionCount);
+    activity = new BenchmarkActivity();
+    activity.grant(Permissions.grantedHalf(perms));
+    PermissionStateCache.getInstance().setEnabled(cache);
+  }
+
+  @TearDown public void tearDown() {
+    PermissionStateCache.getInstance().setEnabled(false);
+  }
+
+  @Benchmark public boolean hasPermissions() {
+    return EasyPermissions.hasPermissions(activity, perms);
+  }
+
+  @Benchmark public String[] excludeHadPermissions() {
+    return EasyPermissions.excludeHadPermissions(activity, perms);
+  }
+}
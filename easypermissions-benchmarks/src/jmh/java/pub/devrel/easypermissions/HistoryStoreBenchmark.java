@@ -0,0 +1,68 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PermissionHistoryStore}的追加写入(包括后台压缩)和查询
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryStoreBenchmark {
+
+  private File file;
+  private PermissionHistoryStore store;
+  private String[] perms;
+  private int next;
+
+  @Setup public void setUp() throws IOException {
+    file = File.createTempFile("history", ".bin");
+    store = PermissionHistoryStore.open(file);
+    perms = Permissions.first(16);
+  }
+
+  @TearDown public void tearDown() {
+    file.delete();
+  }
+
+  @Benchmark public void record() {
+    int i = next++;
+    store.record(perms[i & 15], PermissionHistoryStore.GRANTED + i % 3);
+  }
+
+  @Benchmark public int query() {
+    return store.getDeniedCount(perms[next++ & 15]);
+  }
+}
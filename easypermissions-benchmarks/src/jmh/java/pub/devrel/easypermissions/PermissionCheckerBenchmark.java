@@ -0,0 +1,86 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 比较{@link PermissionChecker#SELF_PERMISSION}(每个权限一次IPC)和{@link PackageInfoPermissionChecker}
+ * (一次IPC查询所有权限)，IPC由{@link BenchmarkActivity#ipcTokens}模拟.
+ *
+ * {@code afterResult}每次检查前丢弃缓存，相当于每次收到结果或onResume后检查一次；
+ * {@code cached}连续检查，只有第一次查询PackageManager。
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PermissionCheckerBenchmark {
+
+  @Param({ "1", "4", "16" })
+  public int permissionCount;
+
+  @Param({ "self", "packageInfo" })
+  public String checker;
+
+  @Param({ "0", "1000" })
+  public long ipcTokens;
+
+  private BenchmarkActivity activity;
+  private String[] perms;
+  private PermissionChecker permissionChecker;
+
+  @Setup public void setUp() {
+    perms = Permissions.first(permissionCount);
+    activity = new BenchmarkActivity();
+    activity.ipcTokens = ipcTokens;
+    // 所有权限都已授权，hasPermissions检查全部权限
+    activity.grant(perms);
+    activity.setRequestedPermissions(Permissions.first(16));
+    permissionChecker = "self".equals(checker) ? PermissionChecker.SELF_PERMISSION
+        : new PackageInfoPermissionChecker(null);
+    EasyPermissions.setPermissionChecker(permissionChecker);
+    PermissionStateCache.getInstance().setEnabled(false);
+  }
+
+  @TearDown public void tearDown() {
+    EasyPermissions.setPermissionChecker(null);
+  }
+
+  @Benchmark public boolean afterResult() {
+    permissionChecker.invalidate();
+    return EasyPermissions.hasPermissions(activity, perms);
+  }
+
+  @Benchmark public boolean cached() {
+    return EasyPermissions.hasPermissions(activity, perms);
+  }
+}
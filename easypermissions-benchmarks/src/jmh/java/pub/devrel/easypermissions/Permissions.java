@@ -0,0 +1,69 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+/**
+ * 基准测试用的权限列表
+ */
+final class Permissions {
+
+  private static final String[] ALL = {
+      "android.permission.CAMERA",
+      "android.permission.READ_CONTACTS",
+      "android.permission.WRITE_CONTACTS",
+      "android.permission.ACCESS_FINE_LOCATION",
+      "android.permission.ACCESS_COARSE_LOCATION",
+      "android.permission.RECORD_AUDIO",
+      "android.permission.READ_PHONE_STATE",
+      "android.permission.CALL_PHONE",
+      "android.permission.READ_CALENDAR",
+      "android.permission.WRITE_CALENDAR",
+      "android.permission.BODY_SENSORS",
+      "android.permission.SEND_SMS",
+      "android.permission.RECEIVE_SMS",
+      "android.permission.READ_SMS",
+      "android.permission.READ_EXTERNAL_STORAGE",
+      "android.permission.WRITE_EXTERNAL_STORAGE"
+  };
+
+  private Permissions() {
+  }
+
+  static String[] first(int count) {
+    String[] perms = new String[count];
+    System.arraycopy(ALL, 0, perms, 0, count);
+    return perms;
+  }
+
+  /**
+   * 偶数位置的权限已授权
+   */
+  static String[] grantedHalf(String[] perms) {
+    String[] granted = new String[(perms.length + 1) / 2];
+    for (int i = 0; i < granted.length; i++) {
+      granted[i] = perms[i * 2];
+    }
+    return granted;
+  }
+
+  static int[] grantResults(String[] perms, boolean allGranted) {
+    int[] results = new int[perms.length];
+    for (int i = 0; i < results.length; i++) {
+      results[i] = allGranted || i % 2 == 0 ? 0 : -1;
+    }
+    return results;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 启动后第一次回调的耗时，比较是否调用了{@link EasyPermissions#prewarm}.
+ *
+ * 每个fork是一个新的JVM，只测第一次调用：从请求结果到{@link AfterPermissionGranted}方法执行完，
+ * 加上一次hasPermissions检查。预热在Setup中同步完成，相当于启动阶段后台线程已经执行结束。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class PrewarmBenchmark {
+
+  @Param({ "false", "true" })
+  public boolean prewarm;
+
+  private BenchmarkActivity host;
+  private String[] perms;
+  private int[] grantResults;
+
+  @Setup public void setUp() {
+    host = new Host100();
+    perms = Permissions.first(4);
+    grantResults = Permissions.grantResults(perms, true);
+    host.grant(perms);
+    host.setRequestedPermissions(perms);
+    PermissionStateCache.getInstance().setEnabled(true);
+    if (prewarm) {
+      new PermissionPrewarmer(host, new Class<?>[] { Host100.class }).prewarm();
+    }
+  }
+
+  @Benchmark public int firstCallback() {
+    EasyPermissions.hasPermissions(host, perms);
+    EasyPermissions.onRequestPermissionsResult(5, perms, grantResults, host);
+    return host.calls;
+  }
+}
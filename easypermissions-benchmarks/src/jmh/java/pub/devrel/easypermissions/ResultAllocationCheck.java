@@ -0,0 +1,119 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * 检查实现{@link EasyPermissions.PermissionResultCallbacks}的宿主接收结果时，预热后每次分发不分配对象.
+ *
+ * 分别检查全部授权(包括执行{@link AfterPermissionGranted}方法)、部分授权和合并结果三种情况，
+ * 用当前线程分配的字节数计数，有分配时抛出{@link AssertionError}。
+ * ./gradlew :easypermissions-benchmarks:checkAllocations
+ */
+public final class ResultAllocationCheck {
+
+  private static final int WARMUP = 50000;
+  private static final int OPS = 10000;
+  private static final int REQUEST_CODE = 7;
+
+  private ResultAllocationCheck() {
+  }
+
+  public static void main(String[] args) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    if (!threads.isThreadAllocatedMemorySupported()) {
+      throw new IllegalStateException("Thread allocation counting is not supported by this VM");
+    }
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    String[] perms = Permissions.first(4);
+    String[] requestedHalf = Arrays.copyOfRange(perms, perms.length / 2, perms.length);
+    Host host = new Host();
+    Scenario[] scenarios = {
+        new Scenario("allGranted", host, perms, Permissions.grantResults(perms, true), null),
+        new Scenario("partiallyGranted", host, perms, Permissions.grantResults(perms, false),
+            null),
+        new Scenario("merged", host, requestedHalf, Permissions.grantResults(requestedHalf, true),
+            perms)
+    };
+
+    long threadId = Thread.currentThread().getId();
+    for (Scenario scenario : scenarios) {
+      for (int i = 0; i < WARMUP; i++) {
+        scenario.run();
+      }
+      long before = threads.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < OPS; i++) {
+        scenario.run();
+      }
+      long bytes = threads.getThreadAllocatedBytes(threadId) - before;
+      // 小于每次1字节说明没有每次分发都分配的对象，最小的对象也有十几字节
+      if (bytes / OPS != 0) {
+        throw new AssertionError(scenario.name + " allocated " + bytes + " bytes in " + OPS
+            + " dispatches");
+      }
+      System.out.println(scenario.name + ": " + bytes + " bytes in " + OPS + " dispatches");
+    }
+    if (host.results == 0 || host.annotated == 0) {
+      throw new AssertionError("Results were not delivered to the host");
+    }
+  }
+
+  private static final class Scenario {
+
+    final String name;
+    final Host host;
+    final String[] permissions;
+    final int[] grantResults;
+    final String[] allPerms;// 不为null时模拟只请求了未授权的一部分
+
+    Scenario(String name, Host host, String[] permissions, int[] grantResults,
+        String[] allPerms) {
+      this.name = name;
+      this.host = host;
+      this.permissions = permissions;
+      this.grantResults = grantResults;
+      this.allPerms = allPerms;
+    }
+
+    void run() {
+      int code = REQUEST_CODE;
+      if (allPerms != null) {
+        code = RequestCodeMultiplexer.PERMISSIONS.allocate(REQUEST_CODE, allPerms, null, 0L);
+      }
+      EasyPermissions.onRequestPermissionsResult(code, permissions, grantResults, host);
+    }
+  }
+
+  public static final class Host extends BenchmarkActivity
+      implements EasyPermissions.PermissionResultCallbacks {
+
+    int results;
+    int annotated;
+
+    @Override public void onPermissionsResult(PermissionResult result) {
+      results += result.getGrantedCount();
+    }
+
+    @AfterPermissionGranted(REQUEST_CODE)
+    public void onAllGranted() {
+      annotated++;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link EasyPermissions#onRequestPermissionsResult}的分发，宿主类有10/100/1000个方法.
+ *
+ * allGranted时会执行{@link AfterPermissionGranted}方法，这部分包括runAnnotatedMethods的开销；
+ * coldMethodCache时每次先清空{@link AnnotatedMethodCache}，相当于每次都反射扫描宿主类。
+ * metrics为false时应该和没有统计功能时的分配一样。
+ * merged是只请求了未授权的一半权限时的分发，结果要合并回调用者请求的全部权限，-prof gc下合并不应该分配。
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResultDispatchBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int methods;
+
+  @Param({ "4" })
+  public int permissionCount;
+
+  @Param({ "false", "true" })
+  public boolean coldMethodCache;
+
+  @Param({ "false", "true" })
+  public boolean metrics;
+
+  private BenchmarkActivity host;
+  private int requestCode;
+  private String[] perms;
+  private int[] allGranted;
+  private int[] partiallyGranted;
+  private String[] requestedHalf;
+  private int[] requestedHalfGranted;
+
+  @Setup public void setUp() throws Exception {
+    host = (BenchmarkActivity) Class.forName("pub.devrel.easypermissions.Host" + methods)
+        .newInstance();
+    requestCode = methods / 10 / 2;// 中间的一个注解方法
+    perms = Permissions.first(permissionCount);
+    allGranted = Permissions.grantResults(perms, true);
+    partiallyGranted = Permissions.grantResults(perms, false);
+    requestedHalf = Arrays.copyOfRange(perms, permissionCount / 2, permissionCount);
+    requestedHalfGranted = Permissions.grantResults(requestedHalf, true);
+    EasyPermissions.setPermissionMetrics(metrics ? new InMemoryPermissionMetrics() : null);
+  }
+
+  @TearDown public void tearDown() {
+    EasyPermissions.setPermissionMetrics(null);
+  }
+
+  @Benchmark public int allGranted() {
+    if (coldMethodCache) {
+      AnnotatedMethodCache.clear();
+    }
+    EasyPermissions.onRequestPermissionsResult(requestCode, perms, allGranted, host);
+    return host.calls;
+  }
+
+  @Benchmark public int partiallyGranted() {
+    if (coldMethodCache) {
+      AnnotatedMethodCache.clear();
+    }
+    EasyPermissions.onRequestPermissionsResult(requestCode, perms, partiallyGranted, host);
+    return host.calls;
+  }
+
+  @Benchmark public int merged() {
+    if (coldMethodCache) {
+      AnnotatedMethodCache.clear();
+    }
+    int code = RequestCodeMultiplexer.PERMISSIONS.allocate(requestCode, perms, null, 0L);
+    EasyPermissions.onRequestPermissionsResult(code, requestedHalf, requestedHalfGranted, host);
+    return host.calls;
+  }
+}
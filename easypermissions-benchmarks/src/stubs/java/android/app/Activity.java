@@ -0,0 +1,42 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.app;
+
+import android.content.ContextWrapper;
+import android.content.Intent;
+
+public class Activity extends ContextWrapper {
+
+  public Activity() {
+    super(null);
+  }
+
+  public void startActivityForResult(Intent intent, int requestCode) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void onRequestPermissionsResult(int requestCode, String[] permissions,
+      int[] grantResults) {
+  }
+
+  protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+  }
+
+  public boolean isFinishing() {
+    return false;
+  }
+
+  public Application getApplication() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public final void requestPermissions(String[] permissions, int requestCode) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public boolean shouldShowRequestPermissionRationale(String permission) {
+    return false;
+  }
+}
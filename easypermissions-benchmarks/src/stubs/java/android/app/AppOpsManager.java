@@ -0,0 +1,15 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.app;
+
+public class AppOpsManager {
+
+  public static final int MODE_ALLOWED = 0;
+  public static final String OPSTR_GET_USAGE_STATS = "android:get_usage_stats";
+
+  public int checkOpNoThrow(String op, int uid, String packageName) {
+    throw new RuntimeException("Stub!");
+  }
+}
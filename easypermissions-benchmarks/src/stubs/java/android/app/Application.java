@@ -0,0 +1,41 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.app;
+
+import android.content.ContextWrapper;
+import android.os.Bundle;
+
+public class Application extends ContextWrapper {
+
+  public Application() {
+    super(null);
+  }
+
+  public void onCreate() {
+  }
+
+  public void registerActivityLifecycleCallbacks(ActivityLifecycleCallbacks callback) {
+  }
+
+  public void unregisterActivityLifecycleCallbacks(ActivityLifecycleCallbacks callback) {
+  }
+
+  public interface ActivityLifecycleCallbacks {
+
+    void onActivityCreated(Activity activity, Bundle savedInstanceState);
+
+    void onActivityStarted(Activity activity);
+
+    void onActivityResumed(Activity activity);
+
+    void onActivityPaused(Activity activity);
+
+    void onActivityStopped(Activity activity);
+
+    void onActivitySaveInstanceState(Activity activity, Bundle outState);
+
+    void onActivityDestroyed(Activity activity);
+  }
+}
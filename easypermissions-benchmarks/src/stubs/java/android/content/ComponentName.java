@@ -0,0 +1,37 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.content;
+
+public final class ComponentName {
+
+  private final String packageName;
+  private final String className;
+
+  public ComponentName(String packageName, String className) {
+    this.packageName = packageName;
+    this.className = className;
+  }
+
+  public static ComponentName unflattenFromString(String str) {
+    int sep = str.indexOf('/');
+    if (sep < 0 || sep + 1 >= str.length()) {
+      return null;
+    }
+    String pkg = str.substring(0, sep);
+    String cls = str.substring(sep + 1);
+    if (cls.length() > 0 && cls.charAt(0) == '.') {
+      cls = pkg + cls;
+    }
+    return new ComponentName(pkg, cls);
+  }
+
+  public String getPackageName() {
+    return packageName;
+  }
+
+  public String getClassName() {
+    return className;
+  }
+}
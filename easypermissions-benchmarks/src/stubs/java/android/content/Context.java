@@ -0,0 +1,49 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.content;
+
+import android.content.pm.PackageManager;
+
+public abstract class Context {
+
+  public static final String APP_OPS_SERVICE = "appops";
+  public static final String POWER_SERVICE = "power";
+
+  public int checkPermission(String permission, int pid, int uid) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public PackageManager getPackageManager() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public String getPackageName() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public Context getApplicationContext() {
+    return this;
+  }
+
+  public Object getSystemService(String name) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public ContentResolver getContentResolver() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public java.io.File getFilesDir() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public String getString(int resId) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void startActivity(Intent intent) {
+    throw new RuntimeException("Stub!");
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.content;
+
+public interface DialogInterface {
+
+  int BUTTON_POSITIVE = -1;
+  int BUTTON_NEGATIVE = -2;
+
+  void cancel();
+
+  void dismiss();
+
+  interface OnClickListener {
+    void onClick(DialogInterface dialog, int which);
+  }
+
+  interface OnCancelListener {
+    void onCancel(DialogInterface dialog);
+  }
+
+  interface OnDismissListener {
+    void onDismiss(DialogInterface dialog);
+  }
+}
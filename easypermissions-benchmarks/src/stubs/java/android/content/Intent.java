@@ -0,0 +1,34 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.content;
+
+import android.net.Uri;
+
+public class Intent {
+
+  public static final int FLAG_ACTIVITY_NEW_TASK = 0x10000000;
+
+  private final String action;
+
+  public Intent(String action) {
+    this.action = action;
+  }
+
+  public Intent(String action, Uri uri) {
+    this.action = action;
+  }
+
+  public Intent setData(Uri data) {
+    return this;
+  }
+
+  public Intent addFlags(int flags) {
+    return this;
+  }
+
+  public String getAction() {
+    return action;
+  }
+}
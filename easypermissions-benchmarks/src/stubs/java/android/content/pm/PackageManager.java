@@ -0,0 +1,26 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.content.pm;
+
+public abstract class PackageManager {
+
+  public static final int PERMISSION_GRANTED = 0;
+  public static final int PERMISSION_DENIED = -1;
+  public static final int GET_PERMISSIONS = 0x00001000;
+
+  public PackageInfo getPackageInfo(String packageName, int flags) throws NameNotFoundException {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static class NameNotFoundException extends Exception {
+
+    public NameNotFoundException() {
+    }
+
+    public NameNotFoundException(String name) {
+      super(name);
+    }
+  }
+}
@@ -0,0 +1,23 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.os;
+
+public class Build {
+
+  public static class VERSION {
+    // 基准测试按6.0运行时权限的路径执行
+    public static final int SDK_INT = VERSION_CODES.M;
+  }
+
+  public static class VERSION_CODES {
+    public static final int HONEYCOMB = 11;
+    public static final int ICE_CREAM_SANDWICH = 14;
+    public static final int JELLY_BEAN = 16;
+    public static final int JELLY_BEAN_MR2 = 18;
+    public static final int LOLLIPOP = 21;
+    public static final int LOLLIPOP_MR1 = 22;
+    public static final int M = 23;
+  }
+}
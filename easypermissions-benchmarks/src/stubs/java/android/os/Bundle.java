@@ -0,0 +1,83 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.os;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public final class Bundle {
+
+  private final Map<String, Object> values = new HashMap<>();
+
+  public boolean containsKey(String key) {
+    return values.containsKey(key);
+  }
+
+  public void putInt(String key, int value) {
+    values.put(key, value);
+  }
+
+  public int getInt(String key) {
+    return getInt(key, 0);
+  }
+
+  public int getInt(String key, int defaultValue) {
+    Object value = values.get(key);
+    return value instanceof Integer ? (Integer) value : defaultValue;
+  }
+
+  public void putLong(String key, long value) {
+    values.put(key, value);
+  }
+
+  public long getLong(String key) {
+    return getLong(key, 0L);
+  }
+
+  public long getLong(String key, long defaultValue) {
+    Object value = values.get(key);
+    return value instanceof Long ? (Long) value : defaultValue;
+  }
+
+  public void putIntArray(String key, int[] value) {
+    values.put(key, value);
+  }
+
+  public int[] getIntArray(String key) {
+    return (int[]) values.get(key);
+  }
+
+  public void putLongArray(String key, long[] value) {
+    values.put(key, value);
+  }
+
+  public long[] getLongArray(String key) {
+    return (long[]) values.get(key);
+  }
+
+  public void putString(String key, String value) {
+    values.put(key, value);
+  }
+
+  public String getString(String key) {
+    return (String) values.get(key);
+  }
+
+  public void putStringArray(String key, String[] value) {
+    values.put(key, value);
+  }
+
+  public String[] getStringArray(String key) {
+    return (String[]) values.get(key);
+  }
+
+  public void putBundle(String key, Bundle value) {
+    values.put(key, value);
+  }
+
+  public Bundle getBundle(String key) {
+    return (Bundle) values.get(key);
+  }
+}
@@ -0,0 +1,21 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.os;
+
+public class Process {
+
+  public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+  public static void setThreadPriority(int priority) {
+  }
+
+  public static int myPid() {
+    return 1;
+  }
+
+  public static int myUid() {
+    return 10000;
+  }
+}
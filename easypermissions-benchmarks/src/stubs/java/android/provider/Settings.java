@@ -0,0 +1,36 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.provider;
+
+import android.content.ContentResolver;
+import android.content.Context;
+
+public final class Settings {
+
+  public static final String ACTION_MANAGE_OVERLAY_PERMISSION =
+      "android.settings.action.MANAGE_OVERLAY_PERMISSION";
+  public static final String ACTION_MANAGE_WRITE_SETTINGS =
+      "android.settings.action.MANAGE_WRITE_SETTINGS";
+  public static final String ACTION_APPLICATION_DETAILS_SETTINGS =
+      "android.settings.APPLICATION_DETAILS_SETTINGS";
+
+  public static boolean canDrawOverlays(Context context) {
+    return false;
+  }
+
+  public static final class System {
+
+    public static boolean canWrite(Context context) {
+      return false;
+    }
+  }
+
+  public static final class Secure {
+
+    public static String getString(ContentResolver resolver, String name) {
+      return null;
+    }
+  }
+}
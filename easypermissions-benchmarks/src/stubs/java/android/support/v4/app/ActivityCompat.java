@@ -0,0 +1,25 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.support.v4.app;
+
+import android.app.Activity;
+import android.support.v4.content.ContextCompat;
+
+public class ActivityCompat extends ContextCompat {
+
+  public interface OnRequestPermissionsResultCallback {
+    void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults);
+  }
+
+  public static void requestPermissions(Activity activity, String[] permissions,
+      int requestCode) {
+    activity.requestPermissions(permissions, requestCode);
+  }
+
+  public static boolean shouldShowRequestPermissionRationale(Activity activity,
+      String permission) {
+    return activity.shouldShowRequestPermissionRationale(permission);
+  }
+}
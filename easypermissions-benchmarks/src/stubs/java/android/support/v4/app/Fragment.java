@@ -0,0 +1,59 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.support.v4.app;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+public class Fragment {
+
+  public FragmentActivity getActivity() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void onCreate(Bundle savedInstanceState) {
+  }
+
+  public void startActivityForResult(Intent intent, int requestCode) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public final void requestPermissions(String[] permissions, int requestCode) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public boolean shouldShowRequestPermissionRationale(String permission) {
+    return false;
+  }
+
+  public void onRequestPermissionsResult(int requestCode, String[] permissions,
+      int[] grantResults) {
+  }
+
+  public void onActivityResult(int requestCode, int resultCode, Intent data) {
+  }
+
+  public void setRetainInstance(boolean retain) {
+  }
+
+  public void onDetach() {
+  }
+
+  public final boolean isAdded() {
+    return false;
+  }
+
+  public final int getId() {
+    return 0;
+  }
+
+  public final String getTag() {
+    return null;
+  }
+
+  public final FragmentManager getChildFragmentManager() {
+    throw new RuntimeException("Stub!");
+  }
+}
@@ -0,0 +1,15 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.support.v4.content;
+
+import android.content.Context;
+import android.os.Process;
+
+public class ContextCompat {
+
+  public static int checkSelfPermission(Context context, String permission) {
+    return context.checkPermission(permission, Process.myPid(), Process.myUid());
+  }
+}
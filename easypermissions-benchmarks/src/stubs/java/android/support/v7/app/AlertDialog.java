@@ -0,0 +1,61 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.support.v7.app;
+
+import android.content.Context;
+import android.content.DialogInterface;
+
+public class AlertDialog implements DialogInterface {
+
+  public void show() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public boolean isShowing() {
+    return false;
+  }
+
+  public void setMessage(CharSequence message) {
+    throw new RuntimeException("Stub!");
+  }
+
+  public void setOnDismissListener(DialogInterface.OnDismissListener listener) {
+    throw new RuntimeException("Stub!");
+  }
+
+  @Override public void cancel() {
+    throw new RuntimeException("Stub!");
+  }
+
+  @Override public void dismiss() {
+    throw new RuntimeException("Stub!");
+  }
+
+  public static class Builder {
+
+    public Builder(Context context) {
+    }
+
+    public Builder setMessage(CharSequence message) {
+      return this;
+    }
+
+    public Builder setPositiveButton(int textId, DialogInterface.OnClickListener listener) {
+      return this;
+    }
+
+    public Builder setNegativeButton(int textId, DialogInterface.OnClickListener listener) {
+      return this;
+    }
+
+    public Builder setOnCancelListener(DialogInterface.OnCancelListener listener) {
+      return this;
+    }
+
+    public AlertDialog create() {
+      throw new RuntimeException("Stub!");
+    }
+  }
+}
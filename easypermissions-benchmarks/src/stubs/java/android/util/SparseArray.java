@@ -0,0 +1,41 @@
+/*
+ * Android API的最小桩实现，只包含easypermissions用到的部分，使库能在普通JVM上运行基准测试.
+ * 实例方法默认抛出异常，由基准测试中的Fake子类覆盖；静态方法给出确定的返回值。
+ */
+package android.util;
+
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+public class SparseArray<E> {
+
+  private final TreeMap<Integer, E> values = new TreeMap<>();
+
+  public E get(int key) {
+    return values.get(key);
+  }
+
+  public void put(int key, E value) {
+    values.put(key, value);
+  }
+
+  public void remove(int key) {
+    values.remove(key);
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+  public int indexOfKey(int key) {
+    return values.containsKey(key) ? values.headMap(key).size() : -1;
+  }
+
+  public E valueAt(int index) {
+    return new ArrayList<>(values.values()).get(index);
+  }
+
+  public void removeAt(int index) {
+    values.remove(new ArrayList<>(values.keySet()).get(index));
+  }
+}
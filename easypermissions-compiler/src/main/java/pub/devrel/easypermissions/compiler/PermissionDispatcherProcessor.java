@@ -0,0 +1,246 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * 为含有{@code @AfterPermissionGranted}方法的类生成{@code <Class>_PermissionDispatcher}，
+ * 用{@code switch(requestCode)}直接调用注解方法，取代运行时反射.
+ *
+ * 编译期检查：注解方法不能有参数，所在的类不能是private的。
+ * 和运行时的{@link Class#getMethods()}一致，只处理public方法，包括继承来的。
+ */
+public final class PermissionDispatcherProcessor extends AbstractProcessor {
+
+  static final String ANNOTATION = "pub.devrel.easypermissions.AfterPermissionGranted";
+  static final String DISPATCHER = "pub.devrel.easypermissions.PermissionDispatcher";
+  static final String SUFFIX = "_PermissionDispatcher";
+
+  @Override public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton(ANNOTATION);
+  }
+
+  @Override public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+    TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+    if (annotation == null) {
+      return false;
+    }
+
+    // 有注解方法的类，按出现顺序
+    Set<TypeElement> hosts = new LinkedHashSet<>();
+    boolean valid = true;
+    for (Element element : env.getElementsAnnotatedWith(annotation)) {
+      ExecutableElement method = (ExecutableElement) element;
+      if (!method.getParameters().isEmpty()) {
+        error(method, "@AfterPermissionGranted method %s() must not have parameters.",
+            method.getSimpleName());
+        valid = false;
+        continue;
+      }
+      if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+        warning(method, "@AfterPermissionGranted method %s() is not public and will be ignored.",
+            method.getSimpleName());
+      }
+      hosts.add((TypeElement) method.getEnclosingElement());
+    }
+    if (!valid) {
+      return true;
+    }
+
+    for (TypeElement host : hosts) {
+      if (!isAccessible(host)) {
+        error(host, "Class %s containing @AfterPermissionGranted methods must not be private.",
+            host.getQualifiedName());
+        continue;
+      }
+
+      Map<Integer, List<String>> cases = collectCases(host);
+      if (!cases.isEmpty()) {
+        write(host, cases);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 收集{@code host}及其父类中的注解方法，同名方法以子类中的声明为准(和反射一致，注解不会被继承)
+   */
+  private Map<Integer, List<String>> collectCases(TypeElement host) {
+    TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+    Map<Integer, List<String>> cases = new TreeMap<>();
+    Set<String> seen = new HashSet<>();
+
+    for (TypeElement type = host; type != null; type = superclassOf(type)) {
+      for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+        // 和Class#getMethods()一致，只有public方法参与覆盖，非public的同名方法不会隐藏父类的public方法
+        Set<Modifier> modifiers = method.getModifiers();
+        if (!method.getParameters().isEmpty() || !modifiers.contains(Modifier.PUBLIC)
+            || !seen.add(method.getSimpleName().toString())) {
+          continue;
+        }
+
+        Integer requestCode = requestCodeOf(method, annotation);
+        if (requestCode == null) {
+          continue;
+        }
+        List<String> names = cases.get(requestCode);
+        if (names == null) {
+          names = new ArrayList<>();
+          cases.put(requestCode, names);
+        }
+        // 静态方法通过类名调用
+        String receiver = modifiers.contains(Modifier.STATIC) ? type.getQualifiedName().toString()
+            : "target";
+        names.add(receiver + "." + method.getSimpleName());
+      }
+    }
+    return cases;
+  }
+
+  private void write(TypeElement host, Map<Integer, List<String>> cases) {
+    String packageName = packageOf(host).getQualifiedName().toString();
+    String binaryName = processingEnv.getElementUtils().getBinaryName(host).toString();
+    String className =
+        (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+            + SUFFIX;
+    String targetType = processingEnv.getTypeUtils().erasure(host.asType()).toString();
+
+    StringBuilder source = new StringBuilder();
+    source.append("// Generated code from easypermissions-compiler. Do not modify!\n");
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n\n");
+    }
+    source.append("public final class ").append(className)
+        .append(" implements ").append(DISPATCHER).append('<').append(targetType).append("> {\n\n")
+        .append("  @Override public void dispatch(").append(targetType)
+        .append(" target, int requestCode) {\n")
+        .append("    switch (requestCode) {\n");
+    for (Map.Entry<Integer, List<String>> entry : cases.entrySet()) {
+      source.append("      case ").append(entry.getKey()).append(":\n");
+      for (String method : entry.getValue()) {
+        source.append("        ").append(method).append("();\n");
+      }
+      source.append("        break;\n");
+    }
+    source.append("    }\n")
+        .append("  }\n")
+        .append("}\n");
+
+    String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+    try {
+      JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, host);
+      Writer writer = file.openWriter();
+      try {
+        writer.write(source.toString());
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      error(host, "Unable to write %s: %s", qualifiedName, e.getMessage());
+    }
+  }
+
+  private static Integer requestCodeOf(ExecutableElement method, TypeElement annotation) {
+    for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+      if (!mirror.getAnnotationType().asElement().equals(annotation)) {
+        continue;
+      }
+      Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+          mirror.getElementValues();
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+          : values.entrySet()) {
+        if (entry.getKey().getSimpleName().contentEquals("value")) {
+          return (Integer) entry.getValue().getValue();
+        }
+      }
+    }
+    return null;
+  }
+
+  private static TypeElement superclassOf(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    if (superclass.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+    String name = element.getQualifiedName().toString();
+    if (name.startsWith("android.") || name.startsWith("java.")) {
+      return null;
+    }
+    return element;
+  }
+
+  private static PackageElement packageOf(Element element) {
+    while (element.getKind() != ElementKind.PACKAGE) {
+      element = element.getEnclosingElement();
+    }
+    return (PackageElement) element;
+  }
+
+  private static boolean isAccessible(TypeElement type) {
+    for (Element e = type; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+      if (((TypeElement) e).getModifiers().contains(Modifier.PRIVATE)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void error(Element element, String message, Object... args) {
+    messager().printMessage(Diagnostic.Kind.ERROR, String.format(message, args), element);
+  }
+
+  private void warning(Element element, String message, Object... args) {
+    messager().printMessage(Diagnostic.Kind.WARNING, String.format(message, args), element);
+  }
+
+  private Messager messager() {
+    return processingEnv.getMessager();
+  }
+}
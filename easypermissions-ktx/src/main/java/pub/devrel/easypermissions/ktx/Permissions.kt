@@ -0,0 +1,155 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions.ktx
+
+import android.app.Activity
+import android.app.Application
+import android.content.Context
+import android.os.Bundle
+import android.support.v4.app.Fragment
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.suspendCancellableCoroutine
+import pub.devrel.easypermissions.EasyPermissions
+import pub.devrel.easypermissions.PermissionFuture
+import pub.devrel.easypermissions.PermissionRequest
+import pub.devrel.easypermissions.PermissionSnapshot
+import java.util.concurrent.TimeUnit
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * 请求[perms]并挂起直到有结果，不阻塞主线程.
+ *
+ * 请求通过[PermissionRequest]发出，宿主不需要转发结果；协程取消时请求同时取消，并释放对宿主的引用。
+ * 设置了[timeoutMillis]时超时以[java.util.concurrent.TimeoutException]结束；请求被中断(系统返回空结果，
+ * 或者rationale没有得到回答就被关闭)时以[pub.devrel.easypermissions.PermissionInterruptedException]结束，
+ * 调用者可以处理，不会当作协程被取消。
+ *
+ * @receiver 属于某个FragmentActivity的Context
+ * @param requestCode [pub.devrel.easypermissions.AfterPermissionGranted]方法需要匹配时指定，默认自动分配
+ */
+suspend fun Context.requestPermissions(
+    vararg perms: String,
+    rationale: String = "",
+    requestCode: Int? = null,
+    timeoutMillis: Long = 0
+): PermissionRequest.Result = suspendCancellableCoroutine { cont ->
+    val builder = PermissionRequest.with(this).permissions(*perms).rationale(rationale)
+    if (requestCode != null) {
+        builder.requestCode(requestCode)
+    }
+    if (timeoutMillis > 0) {
+        builder.timeout(timeoutMillis, TimeUnit.MILLISECONDS)
+    }
+
+    val future = builder.execute()
+    cont.invokeOnCancellation { future.cancel(false) }
+    future.addCallback(object : PermissionFuture.Callback {
+        override fun onResult(result: PermissionRequest.Result) {
+            cont.resume(result)
+        }
+
+        override fun onFailure(error: Throwable) {
+            // future只在协程取消时被取消(invokeOnCancellation)，这时协程已经结束
+            if (cont.isActive) {
+                cont.resumeWithException(error)
+            }
+        }
+    })
+}
+
+/**
+ * 同[Context.requestPermissions]，Fragment需要已经添加到Activity
+ */
+suspend fun Fragment.requestPermissions(
+    vararg perms: String,
+    rationale: String = "",
+    requestCode: Int? = null,
+    timeoutMillis: Long = 0
+): PermissionRequest.Result {
+    val activity = activity
+        ?: throw IllegalStateException("Fragment $this not attached to an activity.")
+    return activity.requestPermissions(*perms, rationale = rationale, requestCode = requestCode,
+        timeoutMillis = timeoutMillis)
+}
+
+/**
+ * 一组权限的授权状态
+ */
+data class PermissionState(val granted: List<String>, val denied: List<String>) {
+
+    val isAllGranted: Boolean
+        get() = denied.isEmpty()
+}
+
+/**
+ * 观察[perms]的授权状态：立即发出当前状态，之后在有请求结果或Activity回到前台(可能在设置页中改了)时重新检查，
+ * 状态变化时才发出。在主线程收集，取消收集后注销所有监听.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+fun Context.permissionState(vararg perms: String): Flow<PermissionState> {
+    val context = applicationContext
+    return callbackFlow<PermissionState> {
+        offer(stateOf(context, perms))
+
+        val listener = EasyPermissions.PermissionResultListener { offer(stateOf(context, perms)) }
+        val callbacks = object : ActivityResumedCallbacks() {
+            override fun onActivityResumed(activity: Activity) {
+                offer(stateOf(context, perms))
+            }
+        }
+        EasyPermissions.addPermissionResultListener(listener)
+        (context as Application).registerActivityLifecycleCallbacks(callbacks)
+
+        awaitClose {
+            EasyPermissions.removePermissionResultListener(listener)
+            context.unregisterActivityLifecycleCallbacks(callbacks)
+        }
+    }.distinctUntilChanged()
+}
+
+private fun stateOf(context: Context, perms: Array<out String>): PermissionState {
+    val snapshot = PermissionSnapshot.take(context, *perms)
+    val granted = ArrayList<String>(snapshot.grantedCount)
+    val denied = ArrayList<String>(snapshot.size() - snapshot.grantedCount)
+    for (i in 0 until snapshot.size()) {
+        if (snapshot.isGranted(i)) {
+            granted.add(snapshot.getPermission(i))
+        } else {
+            denied.add(snapshot.getPermission(i))
+        }
+    }
+    return PermissionState(granted, denied)
+}
+
+private abstract class ActivityResumedCallbacks : Application.ActivityLifecycleCallbacks {
+
+    override fun onActivityCreated(activity: Activity, savedInstanceState: Bundle?) {}
+
+    override fun onActivityStarted(activity: Activity) {}
+
+    override fun onActivityPaused(activity: Activity) {}
+
+    override fun onActivityStopped(activity: Activity) {}
+
+    override fun onActivitySaveInstanceState(activity: Activity, outState: Bundle) {}
+
+    override fun onActivityDestroyed(activity: Activity) {}
+}
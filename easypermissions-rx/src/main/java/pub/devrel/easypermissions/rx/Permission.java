@@ -0,0 +1,57 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions.rx;
+
+/**
+ * 单个权限的请求结果
+ */
+public final class Permission {
+
+  private final String name;
+  private final boolean granted;
+
+  Permission(String name, boolean granted) {
+    this.name = name;
+    this.granted = granted;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isGranted() {
+    return granted;
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Permission)) {
+      return false;
+    }
+    Permission that = (Permission) o;
+    return granted == that.granted && name.equals(that.name);
+  }
+
+  @Override public int hashCode() {
+    return 31 * name.hashCode() + (granted ? 1 : 0);
+  }
+
+  @Override public String toString() {
+    return "Permission{name=" + name + ", granted=" + granted + '}';
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions.rx;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Function;
+import pub.devrel.easypermissions.PermissionFuture;
+import pub.devrel.easypermissions.PermissionRequest;
+
+/**
+ * 以RxJava 2返回权限请求的结果.
+ *
+ * <pre>
+ * RxPermissions.with(activity)
+ *     .request(getString(R.string.rationale), CAMERA)
+ *     .subscribe(result -> { ... });
+ * </pre>
+ *
+ * 同一个Context对同一组权限(不分顺序)的请求在进行中时共享，多个订阅者只发出一次系统请求；
+ * 全部订阅者取消后请求也取消，立即释放对宿主的引用。请求通过{@link PermissionRequest}发出，宿主不需要转发结果。
+ */
+public final class RxPermissions {
+
+  // 进行中的请求，结束或全部取消后移除
+  private static final Map<Key, Observable<PermissionRequest.Result>> IN_FLIGHT = new HashMap<>();
+
+  private final Context context;
+
+  private RxPermissions(Context context) {
+    if (context == null) {
+      throw new IllegalArgumentException("context == null");
+    }
+    this.context = context;
+  }
+
+  /**
+   * @param context 属于某个FragmentActivity的Context
+   */
+  public static RxPermissions with(Context context) {
+    return new RxPermissions(context);
+  }
+
+  /**
+   * 请求{@code perms}，发出一次结果；请求被中断(如rationale被关闭)时以
+   * {@link pub.devrel.easypermissions.PermissionInterruptedException}结束，
+   * 被其他地方取消时以{@link CancellationException}结束
+   */
+  public Single<PermissionRequest.Result> request(String rationale, String... perms) {
+    if (perms.length == 0) {
+      throw new IllegalArgumentException("No permissions to request.");
+    }
+    final Key key = new Key(context, perms);
+    final String[] permissions = perms.clone();
+    final String message = rationale;
+    return Observable.defer(new Callable<Observable<PermissionRequest.Result>>() {
+      @Override public Observable<PermissionRequest.Result> call() {
+        return shared(key, permissions, message);
+      }
+    }).singleOrError();
+  }
+
+  /**
+   * 同{@link #request(String, String...)}，按{@code perms}的顺序逐个发出每个权限的结果
+   */
+  public Observable<Permission> requestEach(String rationale, final String... perms) {
+    return request(rationale, perms).flattenAsObservable(
+        new Function<PermissionRequest.Result, Iterable<Permission>>() {
+          @Override public Iterable<Permission> apply(PermissionRequest.Result result) {
+            List<Permission> permissions = new ArrayList<>(perms.length);
+            for (String perm : perms) {
+              permissions.add(new Permission(perm, result.getGranted().contains(perm)));
+            }
+            return permissions;
+          }
+        });
+  }
+
+  private Observable<PermissionRequest.Result> shared(final Key key, final String[] perms,
+      final String rationale) {
+    synchronized (IN_FLIGHT) {
+      Observable<PermissionRequest.Result> observable = IN_FLIGHT.get(key);
+      if (observable == null) {
+        // 结束时只移除自己，之后相同key的新请求可能已经放入
+        final AtomicReference<Observable<PermissionRequest.Result>> self =
+            new AtomicReference<>();
+        observable = Single.create(new SingleOnSubscribe<PermissionRequest.Result>() {
+          @Override public void subscribe(final SingleEmitter<PermissionRequest.Result> emitter) {
+            final PermissionFuture future = PermissionRequest.with(context)
+                .permissions(perms)
+                .rationale(rationale)
+                .execute();
+            emitter.setCancellable(new Cancellable() {
+              @Override public void cancel() {
+                future.cancel(false);
+              }
+            });
+            future.addCallback(new PermissionFuture.Callback() {
+              @Override public void onResult(PermissionRequest.Result result) {
+                emitter.onSuccess(result);
+              }
+
+              @Override public void onFailure(Throwable error) {
+                if (!emitter.isDisposed()) {// 取消时不再报错
+                  emitter.onError(error);
+                }
+              }
+            });
+          }
+        }).toObservable().doFinally(new Action() {
+          @Override public void run() {
+            synchronized (IN_FLIGHT) {
+              if (IN_FLIGHT.get(key) == self.get()) {
+                IN_FLIGHT.remove(key);
+              }
+            }
+          }
+        }).share();
+        self.set(observable);
+        IN_FLIGHT.put(key, observable);
+      }
+      return observable;
+    }
+  }
+
+  /**
+   * Context(按引用)和排序后的权限
+   */
+  private static final class Key {
+
+    private final Context context;
+    private final String[] perms;
+
+    Key(Context context, String[] perms) {
+      this.context = context;
+      this.perms = perms.clone();
+      Arrays.sort(this.perms);
+    }
+
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return context == that.context && Arrays.equals(perms, that.perms);
+    }
+
+    @Override public int hashCode() {
+      return 31 * System.identityHashCode(context) + Arrays.hashCode(perms);
+    }
+  }
+}
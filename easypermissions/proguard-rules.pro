@@ -9,6 +9,13 @@
 
 # Add any project specific keep options here:
 
+# Generated dispatchers are looked up by name: <Class>_PermissionDispatcher
+-keep class * implements pub.devrel.easypermissions.PermissionDispatcher { <init>(); }
+-keepnames class * { @pub.devrel.easypermissions.AfterPermissionGranted <methods>; }
+-keepclassmembers class * { @pub.devrel.easypermissions.AfterPermissionGranted <methods>; }
+# The permission table generated by permission-index.gradle lives in the app's package and is
+# passed to EasyPermissions.setPermissionIndex() directly, so it needs no keep rule
+
 # If your project uses WebView with JS, uncomment the following
 # and specify the fully qualified class name to the JavaScript interface
 # class:
@@ -0,0 +1,293 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存每个类中{@link AfterPermissionGranted}注解的方法，按requestCode分组.
+ *
+ * 第一次使用某个类时扫描一次{@link Class#getMethods()}，之后的回调直接二分查找，不再反射扫描。
+ * 如果easypermissions-compiler为此类生成了{@link PermissionDispatcher}，则只缓存dispatcher，不再扫描。
+ * Android上没有{@code ClassValue}，这里key是Class的弱引用，value是软引用：value中的Method引用了key，
+ * 内存不足时value先被回收，之后Class才能被卸载。最多缓存{@link #MAX_CLASSES}个类，超过时淘汰最久未使用的一个。
+ * 线程安全。
+ */
+final class AnnotatedMethodCache {
+
+  /** 最多缓存的类数量，正常App的宿主类远小于此数 */
+  static final int MAX_CLASSES = 64;
+
+  private static final Method[] NO_METHODS = new Method[0];
+
+  private static final ReferenceQueue<Class<?>> QUEUE = new ReferenceQueue<>();
+  // 查找时复用的key，只在持有CACHE锁时使用，查找不分配对象
+  private static final Probe PROBE = new Probe();
+  // 按访问顺序，最久未使用的在前
+  private static final Map<Key, SoftReference<Entry>> CACHE =
+      new LinkedHashMap<Key, SoftReference<Entry>>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(
+            Map.Entry<Key, SoftReference<AnnotatedMethodCache.Entry>> eldest) {
+          return size() > MAX_CLASSES;
+        }
+      };
+
+  private AnnotatedMethodCache() {
+  }
+
+  /**
+   * 得到{@code clazz}中注解值为{@code requestCode}的方法.
+   *
+   * @throws RuntimeException 如果匹配的方法有参数
+   */
+  static Method[] getMethods(Class<?> clazz, int requestCode) {
+    return get(clazz).getMethods(requestCode);
+  }
+
+  /**
+   * 得到{@code clazz}对应的生成类，没有则返回null，需要反射调用{@link #getMethods(Class, int)}
+   */
+  static PermissionDispatcher<Object> getDispatcher(Class<?> clazz) {
+    return get(clazz).dispatcher;
+  }
+
+  /**
+   * 预先解析{@code clazz}，可以在后台线程调用
+   */
+  static void resolve(Class<?> clazz) {
+    get(clazz);
+  }
+
+  static void clear() {
+    synchronized (CACHE) {
+      CACHE.clear();
+    }
+  }
+
+  static int size() {
+    synchronized (CACHE) {
+      return CACHE.size();
+    }
+  }
+
+  private static Entry get(Class<?> clazz) {
+    Entry entry = null;
+    synchronized (CACHE) {
+      expungeStaleKeys();
+      PROBE.clazz = clazz;
+      SoftReference<Entry> ref = CACHE.get(PROBE);
+      PROBE.clazz = null;
+      if (ref != null) {
+        entry = ref.get();
+      }
+    }
+    if (entry != null) {
+      return entry;
+    }
+
+    // 在锁外扫描，并发时可能重复解析，结果相同
+    entry = Entry.resolve(clazz);
+    synchronized (CACHE) {
+      CACHE.put(new WeakKey(clazz, QUEUE), new SoftReference<>(entry));
+    }
+    return entry;
+  }
+
+  private static void expungeStaleKeys() {
+    for (Reference<?> ref; (ref = QUEUE.poll()) != null; ) {
+      CACHE.remove(ref);
+    }
+  }
+
+  private interface Key {
+
+    Class<?> clazz();
+  }
+
+  private static final class WeakKey extends WeakReference<Class<?>> implements Key {
+
+    private final int hash;
+
+    WeakKey(Class<?> clazz, ReferenceQueue<Class<?>> queue) {
+      super(clazz, queue);
+      hash = System.identityHashCode(clazz);
+    }
+
+    @Override public Class<?> clazz() {
+      return get();
+    }
+
+    @Override public int hashCode() {
+      return hash;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      Class<?> clazz = get();
+      return clazz != null && o instanceof Key && ((Key) o).clazz() == clazz;
+    }
+  }
+
+  private static final class Probe implements Key {
+
+    Class<?> clazz;
+
+    @Override public Class<?> clazz() {
+      return clazz;
+    }
+
+    @Override public int hashCode() {
+      return System.identityHashCode(clazz);
+    }
+
+    @Override public boolean equals(Object o) {
+      return o instanceof Key && ((Key) o).clazz() == clazz;
+    }
+  }
+
+  private static final class Entry {
+
+    private static final Entry EMPTY = new Entry(new int[0], new Method[0][], new Method[0], null);
+
+    private final int[] requestCodes;// 有序
+    private final Method[][] methods;
+    private final Method[] invalidMethods;// 有参数的方法，调用时再抛异常
+    private final PermissionDispatcher<Object> dispatcher;
+
+    private Entry(int[] requestCodes, Method[][] methods, Method[] invalidMethods,
+        PermissionDispatcher<Object> dispatcher) {
+      this.requestCodes = requestCodes;
+      this.methods = methods;
+      this.invalidMethods = invalidMethods;
+      this.dispatcher = dispatcher;
+    }
+
+    Method[] getMethods(int requestCode) {
+      int index = Arrays.binarySearch(requestCodes, requestCode);
+      if (index < 0) {
+        return NO_METHODS;
+      }
+
+      // Method must be void so that we can invoke it
+      Method invalid = invalidMethods[index];
+      if (invalid != null) {
+        throw new RuntimeException("Cannot execute non-void method " + invalid.getName());
+      }
+      return methods[index];
+    }
+
+    static Entry resolve(Class<?> clazz) {
+      PermissionDispatcher<Object> dispatcher = findDispatcher(clazz);
+      if (dispatcher != null) {
+        return new Entry(EMPTY.requestCodes, EMPTY.methods, EMPTY.invalidMethods, dispatcher);
+      }
+
+      List<Method> annotated = new ArrayList<>();
+      for (Method method : clazz.getMethods()) {
+        if (method.isAnnotationPresent(AfterPermissionGranted.class)) {
+          annotated.add(method);
+        }
+      }
+      if (annotated.isEmpty()) {
+        return EMPTY;
+      }
+
+      int[] codes = new int[annotated.size()];
+      int count = 0;
+      for (Method method : annotated) {
+        int code = method.getAnnotation(AfterPermissionGranted.class).value();
+        if (Arrays.binarySearch(codes, 0, count, code) < 0) {
+          codes[count++] = code;
+          Arrays.sort(codes, 0, count);
+        }
+      }
+      codes = Arrays.copyOf(codes, count);
+
+      Method[][] methods = new Method[count][];
+      Method[] invalidMethods = new Method[count];
+      for (int i = 0; i < count; i++) {
+        List<Method> matched = new ArrayList<>();
+        for (Method method : annotated) {
+          if (method.getAnnotation(AfterPermissionGranted.class).value() != codes[i]) {
+            continue;
+          }
+          if (method.getParameterTypes().length > 0) {
+            if (invalidMethods[i] == null) {
+              invalidMethods[i] = method;
+            }
+            continue;
+          }
+
+          // Make method accessible if private
+          if (!method.isAccessible()) {
+            method.setAccessible(true);
+          }
+          matched.add(method);
+        }
+        methods[i] = matched.toArray(new Method[matched.size()]);
+      }
+
+      return new Entry(codes, methods, invalidMethods, null);
+    }
+
+    /**
+     * 从{@code clazz}向父类查找生成的dispatcher. 子类没有注解方法时不会生成，使用父类的即可；
+     * 但如果某一层声明了注解方法却没有生成类(没有经过编译器处理)，就只能反射。
+     */
+    @SuppressWarnings("unchecked")
+    private static PermissionDispatcher<Object> findDispatcher(Class<?> clazz) {
+      for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+        String name = c.getName();
+        if (name.startsWith("android.") || name.startsWith("java.")) {
+          return null;
+        }
+
+        try {
+          Class<?> generated =
+              Class.forName(name + PermissionDispatcher.SUFFIX, true, c.getClassLoader());
+          return (PermissionDispatcher<Object>) generated.newInstance();
+        } catch (ClassNotFoundException e) {
+          if (declaresAnnotatedMethods(c)) {
+            return null;
+          }
+        } catch (InstantiationException | IllegalAccessException e) {
+          return null;
+        }
+      }
+      return null;
+    }
+
+    private static boolean declaresAnnotatedMethods(Class<?> clazz) {
+      for (Method method : clazz.getDeclaredMethods()) {
+        if (method.isAnnotationPresent(AfterPermissionGranted.class)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
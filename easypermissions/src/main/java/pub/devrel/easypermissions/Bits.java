@@ -0,0 +1,60 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+/**
+ * 不限长度的位集合，第i位在{@code bits[i >>> 6]}中；null或较短的数组表示其余位都是0.
+ *
+ * 用于请求中按权限下标记录的状态(如请求前的rationale)，可以直接保存到Bundle
+ */
+final class Bits {
+
+  private Bits() {
+  }
+
+  /**
+   * 能放下{@code size}位的空集合
+   */
+  static long[] create(int size) {
+    return new long[(size + 63) >>> 6];
+  }
+
+  static boolean isSet(long[] bits, int i) {
+    int word = i >>> 6;
+    return bits != null && word < bits.length && (bits[word] & (1L << i)) != 0;
+  }
+
+  /**
+   * @param bits 需要能放下第i位
+   */
+  static void set(long[] bits, int i) {
+    bits[i >>> 6] |= 1L << i;
+  }
+
+  /**
+   * 复制{@code bits}并设置第i位，不修改原来的集合
+   *
+   * @param size 新集合能放下的位数，需要大于i
+   */
+  static long[] with(long[] bits, int i, int size) {
+    long[] copy = create(size);
+    if (bits != null) {
+      System.arraycopy(bits, 0, copy, 0, Math.min(bits.length, copy.length));
+    }
+    set(copy, i);
+    return copy;
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import android.support.annotation.StringRes;
+import android.support.v7.app.AlertDialog;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 用{@link AlertDialog}显示rationale，每个Activity只创建一个对话框.
+ *
+ * 再次显示时只更新文字，按钮文字不同时才重新创建。对话框正在显示时，相同的请求(requestCode和权限都相同)
+ * 直接合并，返回false；其他请求排队，当前的对话框关闭后依次显示，避免旋转屏幕或连续点击时叠加多个对话框。
+ * Activity销毁时释放对话框，正在显示和排队的请求按取消处理。
+ */
+public class DialogRationalePresenter implements RationalePresenter {
+
+  // value中的dialog引用了Activity，依靠onActivityDestroyed移除
+  private final Map<Activity, Holder> holders = new WeakHashMap<>();
+  private final Application.ActivityLifecycleCallbacks lifecycle = new Lifecycle();
+  private Application application;
+
+  @Override public boolean showRationale(Activity activity, int requestCode, String rationale,
+      @StringRes int positiveButton, @StringRes int negativeButton, Callback callback) {
+    Holder holder = holders.get(activity);
+    if (holder != null && holder.dialog.isShowing()) {
+      if (holder.isDuplicate(requestCode, callback)) {
+        return false;
+      }
+      holder.queue.add(
+          new Queued(requestCode, rationale, positiveButton, negativeButton, callback));
+      return true;
+    }
+
+    if (holder == null || holder.positiveButton != positiveButton
+        || holder.negativeButton != negativeButton) {
+      watch(activity);
+      Holder created = new Holder(activity, rationale, positiveButton, negativeButton);
+      if (holder != null) {
+        created.queue.addAll(holder.queue);
+        holder.queue.clear();
+      }
+      holder = created;
+      holders.put(activity, holder);
+    }
+    holder.show(requestCode, rationale, callback);
+    return true;
+  }
+
+  private void watch(Activity activity) {
+    Application app = activity.getApplication();
+    if (app != null && app != application) {
+      if (application != null) {
+        application.unregisterActivityLifecycleCallbacks(lifecycle);
+      }
+      application = app;
+      app.registerActivityLifecycleCallbacks(lifecycle);
+    }
+  }
+
+  private static final class Queued {
+
+    final int requestCode;
+    final String rationale;
+    final int positiveButton;
+    final int negativeButton;
+    final Callback callback;
+
+    Queued(int requestCode, String rationale, int positiveButton, int negativeButton,
+        Callback callback) {
+      this.requestCode = requestCode;
+      this.rationale = rationale;
+      this.positiveButton = positiveButton;
+      this.negativeButton = negativeButton;
+      this.callback = callback;
+    }
+  }
+
+  private final class Holder implements DialogInterface.OnClickListener,
+      DialogInterface.OnCancelListener, DialogInterface.OnDismissListener {
+
+    final Activity activity;
+    final int positiveButton;
+    final int negativeButton;
+    final AlertDialog dialog;
+    final ArrayDeque<Queued> queue = new ArrayDeque<>();
+    int requestCode;
+    Callback callback;
+
+    Holder(Activity activity, String rationale, int positiveButton, int negativeButton) {
+      this.activity = activity;
+      this.positiveButton = positiveButton;
+      this.negativeButton = negativeButton;
+      // 创建时必须有message，否则message的View不会显示
+      dialog = new AlertDialog.Builder(activity).setMessage(rationale)
+          .setPositiveButton(positiveButton, this)
+          .setNegativeButton(negativeButton, this)
+          .setOnCancelListener(this)
+          .create();
+      dialog.setOnDismissListener(this);
+    }
+
+    void show(int requestCode, String rationale, Callback callback) {
+      this.requestCode = requestCode;
+      this.callback = callback;
+      dialog.setMessage(rationale);
+      dialog.show();
+    }
+
+    /**
+     * 和正在显示或排队的请求相同
+     */
+    boolean isDuplicate(int requestCode, Callback other) {
+      if (callback != null && this.requestCode == requestCode
+          && Arrays.equals(callback.getPermissions(), other.getPermissions())) {
+        return true;
+      }
+      for (Queued queued : queue) {
+        if (queued.requestCode == requestCode
+            && Arrays.equals(queued.callback.getPermissions(), other.getPermissions())) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override public void onClick(DialogInterface dialog, int which) {
+      Callback cb = callback;
+      callback = null;
+      if (cb == null) {
+        return;
+      }
+      if (which == DialogInterface.BUTTON_POSITIVE) {
+        cb.onRationaleAccepted();
+      } else {
+        cb.onRationaleDeclined();
+      }
+    }
+
+    @Override public void onCancel(DialogInterface dialog) {
+      // 返回键或点击外部，和取消按钮一样
+      onClick(dialog, DialogInterface.BUTTON_NEGATIVE);
+    }
+
+    @Override public void onDismiss(DialogInterface dialog) {
+      // 没有点击按钮就被关闭
+      Callback cb = callback;
+      callback = null;
+      if (cb != null) {
+        cb.onRationaleCancelled();
+      }
+
+      // 对话框关闭后再显示排队的请求，按钮回调时对话框还在显示
+      Queued next = queue.poll();
+      if (next != null && holders.get(activity) == this && !showRationale(activity,
+          next.requestCode, next.rationale, next.positiveButton, next.negativeButton,
+          next.callback)) {
+        next.callback.onRationaleCancelled();
+      }
+    }
+
+    void cancelAll() {
+      Callback cb = callback;
+      callback = null;
+      if (cb != null) {
+        cb.onRationaleCancelled();
+      }
+      for (Queued queued; (queued = queue.poll()) != null; ) {
+        queued.callback.onRationaleCancelled();
+      }
+      dialog.dismiss();
+    }
+  }
+
+  private final class Lifecycle implements Application.ActivityLifecycleCallbacks {
+
+    @Override public void onActivityDestroyed(Activity activity) {
+      Holder holder = holders.remove(activity);
+      if (holder != null) {
+        holder.cancelAll();
+      }
+    }
+
+    @Override public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override public void onActivityStarted(Activity activity) {
+    }
+
+    @Override public void onActivityResumed(Activity activity) {
+    }
+
+    @Override public void onActivityPaused(Activity activity) {
+    }
+
+    @Override public void onActivityStopped(Activity activity) {
+    }
+
+    @Override public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+  }
+}
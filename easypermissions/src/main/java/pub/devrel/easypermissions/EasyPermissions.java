@@ -16,26 +16,25 @@
 package pub.devrel.easypermissions;
 
 import android.app.Activity;
+import android.app.Application;
 import android.content.Context;
-import android.content.DialogInterface;
+import android.content.ContextWrapper;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.Uri;
-import android.os.Build;
+import android.os.Bundle;
 import android.provider.Settings;
 import android.support.annotation.StringRes;
 import android.support.v4.app.ActivityCompat;
-import android.support.v4.app.Fragment;
-import android.support.v4.content.ContextCompat;
-import android.support.v7.app.AlertDialog;
+import android.support.v4.app.FragmentActivity;
 import android.util.Log;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -46,13 +45,37 @@ public class EasyPermissions {
   private static final String TAG = "EasyPermissions";
 
   /**
-   * 两个特殊的权限，需要特殊申请.
+   * 内置特殊权限的requestCode，需要特殊申请.
    * 开发者需要在{@link AfterPermissionGranted}中使用{@link EasyPermissions#SYSTEM_ALERT_WINDOW
-   * EasyPermissions#WRITE_SETTINGS}
+   * EasyPermissions#WRITE_SETTINGS}等
    * 才行
+   *
+   * @see SpecialPermission
    */
   public static final int SYSTEM_ALERT_WINDOW = 6666;
   public static final int WRITE_SETTINGS = 8888;
+  public static final int USAGE_ACCESS = 6001;
+  public static final int NOTIFICATION_LISTENER = 6002;
+  public static final int INSTALL_UNKNOWN_APPS = 6003;
+  public static final int IGNORE_BATTERY_OPTIMIZATIONS = 6004;
+
+  /** 特殊权限批量请求在{@link RequestCodeMultiplexer#ACTIVITY_RESULTS}中的tag */
+  private static final String SPECIAL_BATCH_TAG = "special_batch";
+
+  private static final int[] GRANTED = { PackageManager.PERMISSION_GRANTED };
+  private static final int[] DENIED = { PackageManager.PERMISSION_DENIED };
+  private static final Object[] NO_ARGS = {};
+  private static final String[] NO_PERMS = {};
+  private static final int[] NO_RESULTS = {};
+  // 合并结果的缓冲区，分发期间借出，重入时另外分配
+  private static final AtomicReference<int[]> MERGED_RESULTS = new AtomicReference<>();
+
+  private static volatile PermissionMetrics metrics;
+  private static volatile PermissionHistoryStore historyStore;
+  static volatile PermissionChecker permissionChecker = PermissionChecker.SELF_PERMISSION;
+  private static RationalePresenter rationalePresenter = new DialogRationalePresenter();
+  // 写时复制，分发时不加锁
+  private static volatile PermissionResultListener[] resultListeners = {};
 
   public interface PermissionCallbacks extends ActivityCompat.OnRequestPermissionsResultCallback {
 
@@ -61,6 +84,60 @@ public class EasyPermissions {
     void onPermissionsDenied(int requestCode, List<String> perms);
   }
 
+  /**
+   * 实现此接口后，结果通过{@link #onPermissionsResult(PermissionResult)}回调，
+   * 不再调用{@link #onPermissionsGranted(int, List)}和{@link #onPermissionsDenied(int, List)}，
+   * 回调过程不分配对象。
+   */
+  public interface PermissionResultCallbacks extends PermissionCallbacks {
+
+    /**
+     * @param result 只在回调期间有效，不要保存引用
+     */
+    void onPermissionsResult(PermissionResult result);
+  }
+
+  /**
+   * 在{@link #onPermissionsDenied(int, List)}之后，把未授权的权限分为普通拒绝和永久拒绝(不再询问).
+   * 永久拒绝的权限再次请求时会直接打开应用设置页。
+   */
+  public interface PermanentDenialCallbacks extends PermissionCallbacks {
+
+    /**
+     * @param softDenied 还可以再次请求的权限
+     * @param permanentlyDenied 只能在应用设置页中授权的权限
+     */
+    void onPermissionsPermanentlyDenied(int requestCode, List<String> softDenied,
+        List<String> permanentlyDenied);
+  }
+
+  /**
+   * 监听所有请求的结果，不论由谁发起，见{@link #addPermissionResultListener(PermissionResultListener)}
+   */
+  public interface PermissionResultListener {
+
+    /**
+     * 在请求者的回调之前调用
+     *
+     * @param result 只在回调期间有效，不要保存引用
+     */
+    void onPermissionsResult(PermissionResult result);
+  }
+
+  /**
+   * 监听一组权限的授权变化，见{@link #observe(Context, PermissionGroup, PermissionChangeListener)}
+   */
+  public interface PermissionChangeListener {
+
+    /**
+     * 在主线程调用
+     *
+     * @param granted 新授权的权限
+     * @param revoked 被收回的权限
+     */
+    void onPermissionsChanged(PermissionGroup granted, PermissionGroup revoked);
+  }
+
   /**
    * Check if the calling context has a set of permissions.
    *
@@ -71,10 +148,7 @@ public class EasyPermissions {
    */
   public static boolean hasPermissions(Context context, String... perms) {
     for (String perm : perms) {
-      boolean hasPerm =
-          (ContextCompat.checkSelfPermission(context, perm) == PackageManager.PERMISSION_GRANTED);
-
-      if (!hasPerm && !hasSpecialPermission(context, perm)) {
+      if (!PermissionSnapshot.isGranted(context, perm)) {
         return false;
       }
     }
@@ -83,26 +157,122 @@ public class EasyPermissions {
   }
 
   /**
-   * 特殊权限是否授权
+   * 同{@link #hasPermissions(Context, String...)}，按位检查{@code group}
+   */
+  public static boolean hasPermissions(Context context, PermissionGroup group) {
+    return group.hasAll(context);
+  }
+
+  /**
+   * 一次检查{@code object}所在Activity中{@code perms}的授权状态，每个权限只检查一次
    *
-   * {@link Settings#ACTION_MANAGE_OVERLAY_PERMISSION},使用{@link Settings#canDrawOverlays(Context)}检测,
-   * {@link Settings#ACTION_MANAGE_WRITE_SETTINGS},使用{@link Settings.System#canWrite(Context)}检测
+   * @param object Fragment或者Activity
    */
-  private static boolean hasSpecialPermission(Context context, String perm) {
-    if (!Settings.ACTION_MANAGE_OVERLAY_PERMISSION.equals(perm)
-        && !Settings.ACTION_MANAGE_WRITE_SETTINGS.equals(perm)) {// 如果不是特殊权限则返回false
-      return false;
-    }
+  public static PermissionSnapshot snapshot(Object object, String... perms) {
+    return PermissionSnapshot.take(getActivity(object), perms);
+  }
+
+  /**
+   * 设置统计回调，传入null关闭统计
+   *
+   * @see InMemoryPermissionMetrics
+   */
+  public static void setPermissionMetrics(PermissionMetrics permissionMetrics) {
+    metrics = permissionMetrics;
+  }
+
+  /**
+   * 设置后每次请求的结果都会记录到{@code store}中，传入null停止记录
+   *
+   * @see PermissionHistoryStore#open(Context)
+   */
+  public static void setPermissionHistoryStore(PermissionHistoryStore store) {
+    historyStore = store;
+  }
+
+  /**
+   * 设置构建时生成的权限表，通常在{@code Application.onCreate()}中调用，传入null停止使用
+   *
+   * <pre>
+   * EasyPermissions.setPermissionIndex(GeneratedPermissionIndex.INDEX);
+   * </pre>
+   *
+   * @see PermissionIndex
+   */
+  public static void setPermissionIndex(PermissionIndex index) {
+    PermissionIndex.set(index);
+  }
+
+  /**
+   * 选择检查普通权限的后端，传入null恢复默认的{@link PermissionChecker#SELF_PERMISSION}
+   *
+   * @see PackageInfoPermissionChecker
+   */
+  public static void setPermissionChecker(PermissionChecker checker) {
+    permissionChecker = checker != null ? checker : PermissionChecker.SELF_PERMISSION;
+  }
 
-    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {// API>=23才有的 即Android 6.0
-      if (Settings.ACTION_MANAGE_OVERLAY_PERMISSION.equals(perm)) {
-        return Settings.canDrawOverlays(context);
-      } else if (Settings.ACTION_MANAGE_WRITE_SETTINGS.equals(perm)) {
-        return Settings.System.canWrite(context);
+  /**
+   * 每次有结果时回调{@code listener}，用于在权限变化后刷新状态；不用时需要移除
+   */
+  public static synchronized void addPermissionResultListener(PermissionResultListener listener) {
+    PermissionResultListener[] listeners =
+        Arrays.copyOf(resultListeners, resultListeners.length + 1);
+    listeners[listeners.length - 1] = listener;
+    resultListeners = listeners;
+  }
+
+  public static synchronized void removePermissionResultListener(
+      PermissionResultListener listener) {
+    PermissionResultListener[] listeners = resultListeners;
+    for (int i = 0; i < listeners.length; i++) {
+      if (listeners[i] == listener) {
+        PermissionResultListener[] removed = new PermissionResultListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, removed, 0, i);
+        System.arraycopy(listeners, i + 1, removed, i, removed.length - i);
+        resultListeners = removed;
+        return;
       }
     }
+  }
+
+  /**
+   * {@code group}中的权限授权状态变化时通知{@code listener}.
+   * 在收到权限结果(包括从设置页返回)和Activity回到前台后重新检查，短时间内的多次变化合并为一次通知。
+   *
+   * 只保存{@code listener}的弱引用，不会泄漏Activity，调用者需要自己持有它；不用时调用
+   * {@link #unobserve(PermissionChangeListener)}
+   */
+  public static void observe(Context context, PermissionGroup group,
+      PermissionChangeListener listener) {
+    PermissionObserver.observe(context, group, listener);
+  }
+
+  public static void unobserve(PermissionChangeListener listener) {
+    PermissionObserver.unobserve(listener);
+  }
+
+  /**
+   * 替换默认的{@link DialogRationalePresenter}，请求者自己实现了{@link RationalePresenter}时仍然优先使用请求者
+   */
+  public static void setRationalePresenter(RationalePresenter presenter) {
+    if (presenter == null) {
+      throw new IllegalArgumentException("presenter == null");
+    }
+    rationalePresenter = presenter;
+  }
 
-    return true;// 默认是有的
+  /**
+   * 在后台线程预热，把第一次请求时的类加载、注解方法解析和权限检查提前到启动阶段.
+   * 在{@link Application#onCreate()}中调用即可，不会阻塞主线程。
+   *
+   * @param hostClasses 会接收{@link AfterPermissionGranted}回调的Activity/Fragment类
+   */
+  public static void prewarm(Application application, Class<?>... hostClasses) {
+    Thread thread = new Thread(new PermissionPrewarmer(application, hostClasses.clone()),
+        "EasyPermissions-prewarm");
+    thread.setDaemon(true);
+    thread.start();
   }
 
   /**
@@ -114,7 +284,8 @@ public class EasyPermissions {
    * {@link android.support.v13.app.FragmentCompat.OnRequestPermissionsResultCallback}
    * @param rationale a message explaining why the application needs this set of permissions, will
    * be displayed if the user rejects the request the first time.
-   * @param requestCode request code to track this request, must be < 256.
+   * @param requestCode request code to track this request, any int. It is mapped to a system
+   * request code in the range 0xC0-0xFF, which the host should not use for its own requests.
    * @param perms a set of permissions to be requested.
    */
   public static void requestPermissions(final Object object, String rationale,
@@ -123,6 +294,14 @@ public class EasyPermissions {
         perms);
   }
 
+  /**
+   * 请求{@code group}中的权限，同{@link #requestPermissions(Object, String, int, String...)}
+   */
+  public static void requestPermissions(Object object, String rationale, int requestCode,
+      PermissionGroup group) {
+    requestPermissions(object, rationale, requestCode, group.getPermissions());
+  }
+
   /**
    * Request a set of permissions, showing rationale if the system requests it.
    *
@@ -134,92 +313,250 @@ public class EasyPermissions {
    * be displayed if the user rejects the request the first time.
    * @param positiveButton custom text for positive button
    * @param negativeButton custom text for negative button
-   * @param requestCode request code to track this request, must be < 256.
-   * @param perms a set of permissions to be requested.
+   * @param requestCode request code to track this request, any int. It is mapped to a system
+   * request code in the range 0xC0-0xFF, which the host should not use for its own requests.
+   * @param perms a set of permissions to be requested. {@link SpecialPermission}s are requested
+   * one at a time after the others, and everything is reported in a single result; the host must
+   * then also forward {@code onActivityResult}. Declining the rationale skips them.
    */
   public static void requestPermissions(final Object object, String rationale,
       @StringRes int positiveButton, @StringRes int negativeButton, final int requestCode,
       final String... perms) {
 
     checkCallingObjectSuitability(object);
-    final PermissionCallbacks callbacks = (PermissionCallbacks) object;
-
-    boolean shouldShowRationale = false;
     for (String perm : perms) {
-      shouldShowRationale =
-          shouldShowRationale || shouldShowRequestPermissionRationale(object, perm);
+      PermissionIndex.checkDeclared(perm);
+    }
+
+    Activity activity = getActivity(object);
+    if (null == activity) {
+      return;
     }
 
-    if (shouldShowRationale) {
-      Activity activity = getActivity(object);
-      if (null == activity) {
+    final PermissionSnapshot snapshot = PermissionSnapshot.take(activity, perms);
+    boolean hasDeniedSpecial = snapshot.getDeniedSpecial().length > 0;
+
+    // Only time requests that are actually made
+    final long start = startMetrics(requestCode, perms);
+
+    // Only ask the system for what is still missing, finish at once if nothing is
+    if (snapshot.isAllGranted()) {
+      dispatchPermissionsResult(requestCode, perms, snapshot.toGrantResults(), object, start,
+          null);
+      return;
+    }
+
+    // Special permissions are requested one by one after the dangerous ones
+    String[] denied;
+    if (hasDeniedSpecial) {
+      denied = snapshot.getDeniedDangerous();
+      if (denied.length == 0) {
+        requestNextSpecialPermission(object, requestCode, perms, dangerousMask(perms), start);
         return;
       }
+    } else {
+      denied = snapshot.getGrantedCount() > 0 ? snapshot.getDenied() : perms;
+    }
+    String[] allPerms = denied != perms ? perms : null;
 
-      AlertDialog dialog = new AlertDialog.Builder(activity).setMessage(rationale)
-          .setPositiveButton(positiveButton, new DialogInterface.OnClickListener() {
-            @Override public void onClick(DialogInterface dialog, int which) {
-              executePermissionsRequest(object, perms, requestCode);
-            }
-          })
-          .setNegativeButton(negativeButton, new DialogInterface.OnClickListener() {
-            @Override public void onClick(DialogInterface dialog, int which) {
-              // act as if the permissions were denied
-              callbacks.onPermissionsDenied(requestCode, Arrays.asList(perms));
-            }
-          })
-          .create();
-      dialog.show();
+    // Remember the rationale state of every missing permission, the state after the result
+    // tells a permanent denial from a normal one
+    PermissionHistoryStore history = historyStore;
+    long[] rationaleMask = Bits.create(denied.length);
+    boolean shouldShowRationale = false;
+    boolean permanentlyDenied = true;
+    for (int i = 0; i < denied.length; i++) {
+      if (shouldShowRequestPermissionRationale(object, denied[i])) {
+        shouldShowRationale = true;
+        permanentlyDenied = false;
+        Bits.set(rationaleMask, i);
+      } else if (permanentlyDenied && !PermanentDenials.wasPermanentlyDenied(denied[i], history)) {
+        permanentlyDenied = false;
+      }
+    }
+
+    // The system would deny at once, only the app settings can change it now
+    PendingRequest request = new PendingRequest(object, perms, denied, allPerms, rationaleMask,
+        requestCode, start, permanentlyDenied);
+    if (permanentlyDenied && (rationale == null || rationale.length() == 0)) {
+      request.onRationaleAccepted();
+    } else if (shouldShowRationale || permanentlyDenied) {
+      RationalePresenter presenter = object instanceof RationalePresenter
+          ? (RationalePresenter) object : rationalePresenter;
+      request.shownAt = start != 0 ? System.nanoTime() : 0;
+      if (!presenter.showRationale(activity, requestCode, rationale, positiveButton,
+          negativeButton, request)) {
+        request.onRationaleCancelled();
+      }
     } else {
-      executePermissionsRequest(object, perms, requestCode);
+      request.execute();
     }
   }
 
+  /**
+   * 通过{@link PermissionHostFragment}请求权限，宿主不需要转发结果，也不需要实现{@link PermissionCallbacks}.
+   *
+   * @param context 属于某个{@link FragmentActivity}的Context
+   * @param target 接收结果的对象，实现了{@link PermissionCallbacks}则回调，
+   * 全部授权后执行它的{@link AfterPermissionGranted}方法
+   * @param rationale a message explaining why the application needs this set of permissions, will
+   * be displayed if the user rejects the request the first time.
+   * @param requestCode request code to track this request, any int.
+   * @param perms a set of permissions to be requested.
+   * @throws IllegalStateException the activity is finishing and the request can no longer be made
+   */
+  public static void requestPermissions(Context context, final Object target,
+      final String rationale, final int requestCode, final String... perms) {
+    final PermissionHostFragment host =
+        PermissionHostFragment.get(getFragmentActivity(context));
+    host.whenAdded(new Runnable() {
+      @Override public void run() {
+        requestPermissions(host, rationale, host.putTarget(requestCode, target), perms);
+      }
+    });
+  }
+
+  /**
+   * 通过{@link PermissionHostFragment}请求特殊权限，宿主不需要转发{@code onActivityResult}
+   *
+   * @param target 接收结果的对象，同{@link #requestPermissions(Context, Object, String, int, String...)}
+   */
+  public static void requestSpecialPermission(Context context, Object target, String perm) {
+    PermissionHostFragment host = PermissionHostFragment.get(getFragmentActivity(context));
+    int requestCode = checkSpecialCallingObjectSuitability(host, perm).getRequestCode();
+    requestSpecialPermissions(host, target, requestCode, perm);
+  }
+
+  /**
+   * 通过{@link PermissionHostFragment}依次请求多个特殊权限，同{@link #requestSpecialPermissions(Object, int,
+   * String...)}
+   */
+  public static void requestSpecialPermissions(Context context, Object target, int requestCode,
+      String... perms) {
+    requestSpecialPermissions(PermissionHostFragment.get(getFragmentActivity(context)), target,
+        requestCode, perms);
+  }
+
+  private static void requestSpecialPermissions(final PermissionHostFragment host,
+      final Object target, final int requestCode, final String... perms) {
+    host.whenAdded(new Runnable() {
+      @Override public void run() {
+        requestSpecialPermissions(host, host.putTarget(requestCode, target), perms);
+      }
+    });
+  }
+
   /**
    * 请求特殊权限，需要在{@code object}的{@link Activity#onActivityResult(int, int, Intent)}调用{@link
    * EasyPermissions#onActivityResult(int, int, Intent, Object)},让{@link EasyPermissions}处理.
    *
    * 注意：
-   * 1. 如果Activity或Fragment有其他{@link Activity#startActivityForResult(Intent, int)}时，requestCode不要
-   * 和{@link #SYSTEM_ALERT_WINDOW}、{@link #WRITE_SETTINGS}相等
-   * 2. 如果使用注解自动调用方法，要在注解中使用{@link #SYSTEM_ALERT_WINDOW}或{@link #WRITE_SETTINGS}
+   * 1. 实际使用的requestCode在0xEA00~0xEA3F之间分配，Activity或Fragment的其他
+   * {@link Activity#startActivityForResult(Intent, int)}不要使用这个范围
+   * 2. 如果使用注解自动调用方法，要在注解中使用{@link SpecialPermission#getRequestCode()}，
+   * 如{@link #SYSTEM_ALERT_WINDOW}、{@link #WRITE_SETTINGS}
+   * 3. 已经授权或者系统版本不需要申请时直接回调
    *
-   * @see Settings#ACTION_MANAGE_OVERLAY_PERMISSION
-   * @see Settings#ACTION_MANAGE_WRITE_SETTINGS
+   * @param perm {@link SpecialPermission#getName()}，如{@link Settings#ACTION_MANAGE_OVERLAY_PERMISSION}
+   * @see SpecialPermission
    */
   public static void requestSpecialPermission(Object object, String perm) {
-    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {// API>=23才有的 6.0
+    SpecialPermission permission = checkSpecialCallingObjectSuitability(object, perm);
+    long start = startMetrics(permission.getRequestCode(), permission.asArray);
+
+    Activity activity = getActivity(object);
+    if (permission.isGranted(activity)) {
+      dispatchPermissionsResult(permission.getRequestCode(), permission.asArray, GRANTED, object,
+          start, null);
       return;
     }
 
-    checkSpecialCallingObjectSuitability(object, perm);
-
     // 需要开启Activity请求
-    if (object instanceof Fragment) {// fragment
-      Fragment f = (Fragment) object;
-
-      if (Settings.ACTION_MANAGE_OVERLAY_PERMISSION.equals(perm)) {// System_alert_window
-        Intent intent = new Intent(Settings.ACTION_MANAGE_OVERLAY_PERMISSION);
-        intent.setData(Uri.parse("package:" + f.getActivity().getPackageName()));
-        f.startActivityForResult(intent, SYSTEM_ALERT_WINDOW);
-      } else if (Settings.ACTION_MANAGE_WRITE_SETTINGS.equals(perm)) {// write_setting
-        Intent intent = new Intent(Settings.ACTION_MANAGE_WRITE_SETTINGS);
-        intent.setData(Uri.parse("package:" + f.getActivity().getPackageName()));
-        f.startActivityForResult(intent, WRITE_SETTINGS);
+    startActivityForResult(object, permission.newIntent(activity),
+        RequestCodeMultiplexer.ACTIVITY_RESULTS.allocate(permission.getRequestCode(), start));
+  }
+
+  /**
+   * 依次打开{@code perms}中未授权特殊权限的设置页，全部返回后以{@code requestCode}回调一次结果.
+   * 同样需要在{@code object}的{@link Activity#onActivityResult(int, int, Intent)}调用{@link
+   * EasyPermissions#onActivityResult(int, int, Intent, Object)}，进程被杀后通过
+   * {@link #onSaveInstanceState(Bundle)}继续。
+   */
+  public static void requestSpecialPermissions(Object object, int requestCode, String... perms) {
+    for (String perm : perms) {
+      checkSpecialCallingObjectSuitability(object, perm);
+    }
+
+    requestNextSpecialPermission(object, requestCode, perms, null,
+        startMetrics(requestCode, perms));
+  }
+
+  /**
+   * 打开下一个未授权、还没打开过设置页的特殊权限；都处理完后回调一次结果
+   *
+   * @param perms 可以包含已经请求过的普通权限
+   * @param requested 第i位表示已经请求过{@code perms[i]}，见{@link Bits}
+   */
+  private static void requestNextSpecialPermission(Object object, int requestCode,
+      String[] perms, long[] requested, long startNanos) {
+    Activity activity = getActivity(object);
+    for (int i = 0; i < perms.length; i++) {
+      if (Bits.isSet(requested, i)) {
+        continue;
+      }
+
+      SpecialPermission permission = SpecialPermission.get(perms[i]);
+      if (permission != null && !permission.isGranted(activity)) {
+        startActivityForResult(object, permission.newIntent(activity),
+            RequestCodeMultiplexer.ACTIVITY_RESULTS.allocate(SPECIAL_BATCH_TAG, requestCode, perms,
+                Bits.with(requested, i, perms.length), startNanos));
+        return;
+      }
+    }
+
+    // 普通权限的永久拒绝在请求时已经记录
+    PermissionSnapshot snapshot = PermissionSnapshot.take(activity, perms);
+    dispatchPermissionsResult(requestCode, perms, snapshot.toGrantResults(), object, startNanos,
+        snapshot.isAllGranted() ? null : PermanentDenials.retain(snapshot.getDeniedDangerous()));
+  }
+
+  /**
+   * 普通权限的结果；其中还有未授权的特殊权限时继续依次请求，全部完成后一起回调
+   */
+  static void dispatchOrRequestSpecial(int requestCode, String[] permissions,
+      int[] grantResults, Object object, long startNanos, String[] permanentlyDenied) {
+    Activity activity = null;
+    for (int i = 0; i < permissions.length; i++) {
+      // 特殊权限没有随普通权限请求，合并结果时按已授权填充，这里重新检查
+      SpecialPermission permission = SpecialPermission.get(permissions[i]);
+      if (permission != null) {
+        if (activity == null) {
+          activity = getActivity(object);
+        }
+        if (!permission.isGranted(activity)) {
+          PermanentDenials.addAll(permanentlyDenied);
+          requestNextSpecialPermission(object, requestCode, permissions,
+              dangerousMask(permissions), startNanos);
+          return;
+        }
       }
-    } else if (object instanceof Activity) {// activity
-      Activity a = (Activity) object;
-
-      if (Settings.ACTION_MANAGE_OVERLAY_PERMISSION.equals(perm)) {
-        Intent intent = new Intent(Settings.ACTION_MANAGE_OVERLAY_PERMISSION);
-        intent.setData(Uri.parse("package:" + a.getPackageName()));
-        a.startActivityForResult(intent, SYSTEM_ALERT_WINDOW);
-      } else if (Settings.ACTION_MANAGE_WRITE_SETTINGS.equals(perm)) {
-        Intent intent = new Intent(Settings.ACTION_MANAGE_WRITE_SETTINGS);
-        intent.setData(Uri.parse("package:" + a.getPackageName()));
-        a.startActivityForResult(intent, WRITE_SETTINGS);
+    }
+
+    dispatchPermissionsResult(requestCode, permissions, grantResults, object, startNanos,
+        permanentlyDenied);
+  }
+
+  /**
+   * 第i位表示{@code perms[i]}不是特殊权限
+   */
+  private static long[] dangerousMask(String[] perms) {
+    long[] mask = Bits.create(perms.length);
+    for (int i = 0; i < perms.length; i++) {
+      if (SpecialPermission.get(perms[i]) == null) {
+        Bits.set(mask, i);
       }
     }
+    return mask;
   }
 
   /**
@@ -243,34 +580,102 @@ public class EasyPermissions {
       int[] grantResults, Object object) {
 
     checkCallingObjectSuitability(object);
-    PermissionCallbacks callbacks = (PermissionCallbacks) object;
 
-    // Make a collection of granted and denied permissions from the request.
-    ArrayList<String> granted = new ArrayList<>();
-    ArrayList<String> denied = new ArrayList<>();
-    for (int i = 0; i < permissions.length; i++) {
-      String perm = permissions[i];
-      if (grantResults[i] == PackageManager.PERMISSION_GRANTED) {
-        granted.add(perm);
-      } else {
-        denied.add(perm);
+    // Grants may have changed, drop cached state
+    invalidateGrants();
+
+    // Map the system request code back to the caller's
+    RequestCodeMultiplexer mux = RequestCodeMultiplexer.PERMISSIONS;
+    long start = 0;
+    long[] rationaleMask = null;
+    String[] allPerms = null;
+    if (mux.contains(requestCode)) {
+      String tag = mux.tagOf(requestCode);
+      int key = mux.keyOf(requestCode);
+      start = mux.startOf(requestCode);
+      rationaleMask = mux.maskOf(requestCode);
+      allPerms = mux.permsOf(requestCode);
+      mux.release(requestCode);
+
+      // Results of a coalesced request are fanned out to the original callers
+      if (PermissionRequestScheduler.BATCH_TAG.equals(tag)) {
+        PermissionRequestScheduler.getInstance()
+            .onBatchResult(requestCode, key, allPerms, rationaleMask, permissions, grantResults,
+                object);
+        return;
       }
+      requestCode = key;
     }
 
-    // Report granted permissions, if any.
-    if (!granted.isEmpty()) {
-      // Notify callbacks
-      callbacks.onPermissionsGranted(requestCode, granted);
+    String[] permanentlyDenied =
+        findPermanentlyDenied(object, permissions, grantResults, rationaleMask);
+
+    // Only the missing permissions were requested, the others were already granted
+    if (allPerms != null && permissions.length > 0) {
+      // 缓冲区可能比allPerms长，只使用前allPerms.length个
+      int[] results = MERGED_RESULTS.getAndSet(null);
+      if (results == null || results.length < allPerms.length) {
+        results = new int[Math.max(allPerms.length, 8)];
+      }
+      for (int i = 0; i < allPerms.length; i++) {
+        results[i] = PermissionRequestScheduler.resultOf(allPerms[i], permissions, grantResults,
+            PackageManager.PERMISSION_GRANTED);
+      }
+      try {
+        dispatchOrRequestSpecial(requestCode, allPerms, results, object, start,
+            permanentlyDenied);
+      } finally {
+        MERGED_RESULTS.set(results);
+      }
+      return;
     }
 
-    // Report denied permissions, if any.
-    if (!denied.isEmpty()) {
-      callbacks.onPermissionsDenied(requestCode, denied);
+    dispatchOrRequestSpecial(requestCode, permissions, grantResults, object, start,
+        permanentlyDenied);
+  }
+
+  /**
+   * 找出被永久拒绝的权限：请求后不再需要rationale，并且请求前需要rationale或者之前已知被永久拒绝；
+   * 两者都不是说明用户还没有看到系统对话框请求就被中断了.
+   *
+   * @param rationaleMask 请求前的rationale状态，第i位对应{@code permissions[i]}，见{@link Bits}
+   * @return 没有则返回null
+   */
+  static String[] findPermanentlyDenied(Object object, String[] permissions, int[] grantResults,
+      long[] rationaleMask) {
+    PermissionHistoryStore history = historyStore;
+    String[] found = null;
+    int count = 0;
+    for (int i = 0; i < permissions.length; i++) {
+      if (grantResults[i] == PackageManager.PERMISSION_GRANTED
+          || PermissionSnapshot.isSpecialPermission(permissions[i])
+          || shouldShowRequestPermissionRationale(object, permissions[i])) {
+        continue;
+      }
+
+      boolean rationaleBefore = Bits.isSet(rationaleMask, i);
+      if (rationaleBefore || PermanentDenials.wasPermanentlyDenied(permissions[i], history)) {
+        if (found == null) {
+          found = new String[permissions.length - i];
+        }
+        found[count++] = permissions[i];
+      }
     }
+    return found == null || count == found.length ? found : Arrays.copyOf(found, count);
+  }
 
-    // If 100% successful, call annotated methods
-    if (!granted.isEmpty() && denied.isEmpty()) {
-      runAnnotatedMethods(object, requestCode);
+  /**
+   * @param startNanos 请求开始的时间，用于{@link PermissionMetrics}，没有记录为0
+   * @param permanentlyDenied 被永久拒绝的权限，没有为null
+   */
+  static void dispatchPermissionsResult(int requestCode, String[] permissions,
+      int[] grantResults, Object object, long startNanos, String[] permanentlyDenied) {
+    // Partition granted and denied permissions in place, without copying.
+    PermissionResult result = PermissionResult.obtain(requestCode, permissions, grantResults);
+    try {
+      dispatchResult(object, result, startNanos, permanentlyDenied);
+    } finally {
+      result.recycle();
     }
   }
 
@@ -281,118 +686,301 @@ public class EasyPermissions {
    * 因为系统没有返回此权限是否授予，所以，需要{@link EasyPermissions}检查
    */
   public static void onActivityResult(int requestCode, int resultCode, Intent data, Object object) {
-    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+    checkCallingObjectSuitability(object);
+
+    // 映射回调用者的requestCode，不是由EasyPermissions分配的保持不变
+    RequestCodeMultiplexer mux = RequestCodeMultiplexer.ACTIVITY_RESULTS;
+    long start = 0;
+    String tag = null;
+    String[] settingsPerms = null;
+    long[] requested = null;
+    if (mux.contains(requestCode)) {
+      int key = mux.keyOf(requestCode);
+      tag = mux.tagOf(requestCode);
+      start = mux.startOf(requestCode);
+      settingsPerms = mux.permsOf(requestCode);
+      requested = mux.maskOf(requestCode);
+      mux.release(requestCode);
+      requestCode = key;
+    }
+
+    // 从设置页返回，权限可能变了
+    if (settingsPerms != null) {
+      invalidateGrants();
+    }
+
+    // 特殊权限批量请求，继续下一个
+    if (SPECIAL_BATCH_TAG.equals(tag)) {
+      requestNextSpecialPermission(object, requestCode, settingsPerms, requested, start);
       return;
     }
 
-    checkCallingObjectSuitability(object);
+    // 从应用设置页返回，重新检查，仍未授权的还是永久拒绝
+    if (settingsPerms != null) {
+      PermissionSnapshot snapshot = PermissionSnapshot.take(getActivity(object), settingsPerms);
+      String[] denied = snapshot.getDeniedDangerous();
+      dispatchOrRequestSpecial(requestCode, settingsPerms, snapshot.toGrantResults(), object,
+          start, denied.length > 0 ? denied : null);
+      return;
+    }
 
-    PermissionCallbacks callbacks = (PermissionCallbacks) object;
+    SpecialPermission permission = SpecialPermission.forRequestCode(requestCode);
+    if (permission == null) {// 不是特殊权限的请求
+      return;
+    }
 
-    ArrayList<String> permissions = new ArrayList<>();
-    switch (requestCode) {
-      case SYSTEM_ALERT_WINDOW:
-        permissions.add(Settings.ACTION_MANAGE_OVERLAY_PERMISSION);
-        break;
-      case WRITE_SETTINGS:
-        permissions.add(Settings.ACTION_MANAGE_WRITE_SETTINGS);
-        break;
+    // 从设置页返回，特殊权限可能变了
+    invalidateGrants();
+
+    boolean hasPermission = PermissionSnapshot.isGranted(getActivity(object), permission.getName());
+    PermissionResult result = PermissionResult.obtain(requestCode, permission.asArray,
+        hasPermission ? GRANTED : DENIED);
+    try {
+      dispatchResult(object, result, start, null);// 授权后自动调用注释方法
+    } finally {
+      result.recycle();
+    }
+  }
+
+  private static void dispatchResult(Object object, PermissionResult result, long startNanos,
+      String[] permanentlyDenied) {
+    int requestCode = result.getRequestCode();
+
+    // The headless host hands the result to whoever made the request, under the caller's code
+    Object target = object;
+    if (object instanceof PermissionHostFragment) {
+      TargetRef ref = ((PermissionHostFragment) object).removeTarget(requestCode);
+      target = ref != null ? ref.resolve(getActivity(object)) : null;
+      if (ref != null) {
+        requestCode = ref.requestCode;
+        result.setRequestCode(requestCode);
+      }
     }
+    PermanentDenials.update(result, permanentlyDenied);
 
-    if (permissions.size() < 1) {// 这种情况绝不会发生，╮(╯▽╰)╭
+    PermissionMetrics m = metrics;
+    if (m != null) {
+      m.onPermissionsResult(result, startNanos != 0 ? System.nanoTime() - startNanos : -1);
+    }
+    PermissionHistoryStore history = historyStore;
+    if (history != null && result.size() > 0) {
+      history.record(result, permanentlyDenied);
+    }
+    for (PermissionResultListener listener : resultListeners) {
+      listener.onPermissionsResult(result);
+    }
+
+    if (target == null) {
       return;
     }
 
-    boolean hasPermission = hasSpecialPermission(getActivity(object), permissions.get(0));
-    if (hasPermission) {
-      callbacks.onPermissionsGranted(requestCode, permissions);
-      runAnnotatedMethods(object, requestCode);// 自动调用注释方法
-    } else {
-      callbacks.onPermissionsDenied(requestCode, permissions);
+    if (target instanceof PermissionResultCallbacks) {
+      ((PermissionResultCallbacks) target).onPermissionsResult(result);
+    } else if (target instanceof PermissionCallbacks) {
+      PermissionCallbacks callbacks = (PermissionCallbacks) target;
+      // Report granted permissions, if any.
+      if (result.getGrantedCount() > 0) {
+        callbacks.onPermissionsGranted(requestCode, result.copyGranted());
+      }
+
+      // Report denied permissions, if any.
+      if (result.getDeniedCount() > 0) {
+        List<String> denied = result.copyDenied();
+        callbacks.onPermissionsDenied(requestCode, denied);
+
+        if (target instanceof PermanentDenialCallbacks) {
+          List<String> permanent = new ArrayList<>();
+          if (permanentlyDenied != null) {
+            for (String perm : permanentlyDenied) {
+              if (denied.remove(perm)) {
+                permanent.add(perm);
+              }
+            }
+          }
+          ((PermanentDenialCallbacks) target)
+              .onPermissionsPermanentlyDenied(requestCode, denied, permanent);
+        }
+      }
+    }
+
+    // If 100% successful, call annotated methods
+    if (result.isAllGranted()) {
+      long begin = m != null ? System.nanoTime() : 0;
+      runAnnotatedMethods(target, requestCode);
+      if (m != null) {
+        m.onAnnotatedMethodsDispatched(target, requestCode, System.nanoTime() - begin);
+      }
     }
   }
 
-  private static boolean shouldShowRequestPermissionRationale(Object object, String perm) {
-    if (object instanceof Activity) {
-      return ActivityCompat.shouldShowRequestPermissionRationale((Activity) object, perm);
-    } else if (object instanceof Fragment) {
-      return ((Fragment) object).shouldShowRequestPermissionRationale(perm);
-    } else {
-      return false;
+  /**
+   * 通知{@link PermissionMetrics}开始请求
+   *
+   * @return 开始时间，没有设置统计时为0
+   */
+  private static long startMetrics(int requestCode, String[] perms) {
+    PermissionMetrics m = metrics;
+    if (m == null) {
+      return 0;
     }
+    m.onPermissionsRequested(requestCode, perms);
+    return System.nanoTime();
+  }
+
+  private static void reportRationaleDismissed(int requestCode, boolean accepted, long shownAt) {
+    PermissionMetrics m = metrics;
+    if (m != null && shownAt != 0) {
+      m.onRationaleDismissed(requestCode, accepted, System.nanoTime() - shownAt);
+    }
+  }
+
+  private static boolean shouldShowRequestPermissionRationale(Object object, String perm) {
+    PermissionHost<Object> host = PermissionHost.of(object);
+    return host != null && host.shouldShowRequestPermissionRationale(object, perm);
   }
 
-  private static void executePermissionsRequest(Object object, String[] perms, int requestCode) {
+  /**
+   * @param allPerms all permissions of the caller when {@code perms} is only the missing part,
+   * otherwise null
+   * @param rationaleMask bit i is set if {@code perms[i]} needed a rationale before the request,
+   * see {@link Bits}
+   */
+  private static void executePermissionsRequest(Object object, String[] perms, String[] allPerms,
+      long[] rationaleMask, int requestCode, long startNanos) {
     checkCallingObjectSuitability(object);
 
-    if (object instanceof Activity) {
-      ActivityCompat.requestPermissions((Activity) object, perms, requestCode);
-    } else if (object instanceof Fragment) {
-      ((Fragment) object).requestPermissions(perms, requestCode);
+    // Merge with other requests from the same Activity in this looper turn, if enabled
+    if (PermissionRequestScheduler.getInstance().enqueue(object, getActivity(object), perms,
+        allPerms, rationaleMask, requestCode, startNanos)) {
+      return;
     }
+
+    executePermissionsRequestNow(object, perms, RequestCodeMultiplexer.PERMISSIONS
+        .allocate(requestCode, allPerms, rationaleMask, startNanos));
   }
 
-  private static Activity getActivity(Object object) {
-    if (object instanceof Activity) {
-      return ((Activity) object);
-    } else if (object instanceof Fragment) {
-      return ((Fragment) object).getActivity();
-    } else {
-      return null;
+  /**
+   * @param requestCode system request code allocated from {@link RequestCodeMultiplexer#PERMISSIONS}
+   */
+  static void executePermissionsRequestNow(Object object, String[] perms, int requestCode) {
+    PermissionHost<Object> host = PermissionHost.of(object);
+    if (host != null) {
+      host.requestPermissions(object, perms, requestCode);
     }
   }
 
+  /**
+   * 打开应用设置页，返回时在{@link #onActivityResult(int, int, Intent, Object)}中重新检查{@code perms}
+   */
+  private static void openAppSettings(Object object, String[] perms, int requestCode,
+      long startNanos) {
+    Activity activity = getActivity(object);
+    Intent intent = new Intent(Settings.ACTION_APPLICATION_DETAILS_SETTINGS,
+        Uri.fromParts("package", activity.getPackageName(), null));
+    startActivityForResult(object, intent, RequestCodeMultiplexer.ACTIVITY_RESULTS
+        .allocate(requestCode, perms, null, startNanos));
+  }
+
+  private static void startActivityForResult(Object object, Intent intent, int requestCode) {
+    PermissionHost<Object> host = PermissionHost.of(object);
+    if (host != null) {
+      host.startActivityForResult(object, intent, requestCode);
+    }
+  }
+
+  static FragmentActivity getFragmentActivity(Context context) {
+    while (context instanceof ContextWrapper) {
+      if (context instanceof FragmentActivity) {
+        return (FragmentActivity) context;
+      }
+      context = ((ContextWrapper) context).getBaseContext();
+    }
+    throw new IllegalArgumentException("Context must belong to a FragmentActivity.");
+  }
+
+  static void invalidateGrants() {
+    PermissionStateCache.getInstance().invalidate();
+    permissionChecker.invalidate();
+  }
+
+  static Activity getActivity(Object object) {
+    PermissionHost<Object> host = PermissionHost.of(object);
+    return host != null ? host.getActivity(object) : null;
+  }
+
   private static void runAnnotatedMethods(Object object, int requestCode) {
-    Class clazz = object.getClass();
-    for (Method method : clazz.getMethods()) {
-      if (method.isAnnotationPresent(AfterPermissionGranted.class)) {
-        // Check for annotated methods with matching request code.
-        AfterPermissionGranted ann = method.getAnnotation(AfterPermissionGranted.class);
-        if (ann.value() == requestCode) {
-          // Method must be void so that we can invoke it
-          if (method.getParameterTypes().length > 0) {
-            throw new RuntimeException("Cannot execute non-void method " + method.getName());
-          }
+    // Prefer the dispatcher generated by easypermissions-compiler
+    PermissionDispatcher<Object> dispatcher = AnnotatedMethodCache.getDispatcher(object.getClass());
+    if (dispatcher != null) {
+      try {
+        dispatcher.dispatch(object, requestCode);
+      } catch (RuntimeException e) {
+        // Same as the reflective path, which only logs InvocationTargetException
+        Log.e(TAG, "runDefaultMethod:" + e.getClass().getSimpleName(), e);
+      }
+      return;
+    }
 
-          try {
-            // Make method accessible if private
-            if (!method.isAccessible()) {
-              method.setAccessible(true);
-            }
-            method.invoke(object);
-          } catch (IllegalAccessException e) {
-            Log.e(TAG, "runDefaultMethod:IllegalAccessException", e);
-          } catch (InvocationTargetException e) {
-            Log.e(TAG, "runDefaultMethod:InvocationTargetException", e);
-          }
-        }
+    // Annotated methods are resolved once per class, see AnnotatedMethodCache
+    for (Method method : AnnotatedMethodCache.getMethods(object.getClass(), requestCode)) {
+      try {
+        method.invoke(object, NO_ARGS);
+      } catch (IllegalAccessException e) {
+        Log.e(TAG, "runDefaultMethod:IllegalAccessException", e);
+      } catch (InvocationTargetException e) {
+        Log.e(TAG, "runDefaultMethod:InvocationTargetException", e);
       }
     }
   }
 
   private static void checkCallingObjectSuitability(Object object) {
-    // Make sure Object is an Activity or Fragment
-    if (!((object instanceof Fragment) || (object instanceof Activity))) {
-      throw new IllegalArgumentException("Caller must be an Activity or a Fragment.");
+    // Make sure Object has a PermissionHost: Activity, Fragment or a registered type
+    if (PermissionHost.of(object) == null) {
+      throw new IllegalArgumentException(
+          "Caller must be an Activity, a Fragment or have a PermissionHost.");
     }
 
-    // Make sure Object implements callbacks
-    if (!(object instanceof PermissionCallbacks)) {
+    // Make sure Object implements callbacks, the headless host forwards to its targets instead
+    if (!(object instanceof PermissionCallbacks) && !(object instanceof PermissionHostFragment)) {
       throw new IllegalArgumentException("Caller must implement PermissionCallbacks.");
     }
   }
 
-  private static void checkSpecialCallingObjectSuitability(Object object, String perm) {
-    // Make sure Object is an Activity or Fragment
-    if (!((object instanceof Fragment) || (object instanceof Activity))) {
-      throw new IllegalArgumentException("Caller must be an Activity or a Fragment.");
+  private static SpecialPermission checkSpecialCallingObjectSuitability(Object object,
+      String perm) {
+    // Make sure Object has a PermissionHost: Activity, Fragment or a registered type
+    if (PermissionHost.of(object) == null) {
+      throw new IllegalArgumentException(
+          "Caller must be an Activity, a Fragment or have a PermissionHost.");
     }
 
     // Make sure Permission is special permission
-    if (!Settings.ACTION_MANAGE_OVERLAY_PERMISSION.equals(perm)
-        && !Settings.ACTION_MANAGE_WRITE_SETTINGS.equals(perm)) {
+    SpecialPermission permission = SpecialPermission.get(perm);
+    if (permission == null) {
       throw new IllegalArgumentException("permission must is a special permission");
     }
+    PermissionIndex.checkDeclared(perm);
+    return permission;
+  }
+
+  /**
+   * 保存进行中的请求，在宿主的{@code onSaveInstanceState}中调用，
+   * 进程被杀后结果仍能映射回原来的requestCode
+   */
+  public static void onSaveInstanceState(Bundle outState) {
+    RequestCodeMultiplexer.PERMISSIONS.save(outState);
+    RequestCodeMultiplexer.ACTIVITY_RESULTS.save(outState);
+  }
+
+  /**
+   * 恢复{@link #onSaveInstanceState(Bundle)}保存的请求，在宿主的{@code onCreate}中调用
+   */
+  public static void onRestoreInstanceState(Bundle savedInstanceState) {
+    if (savedInstanceState == null) {
+      return;
+    }
+    RequestCodeMultiplexer.PERMISSIONS.restore(savedInstanceState);
+    RequestCodeMultiplexer.ACTIVITY_RESULTS.restore(savedInstanceState);
   }
 
   /**
@@ -401,16 +989,79 @@ public class EasyPermissions {
    * @param object Fragment或者Activity
    */
   public static String[] excludeHadPermissions(Object object, String... perms) {
-    List<String> permsList = new ArrayList(Arrays.asList(perms));
+    return snapshot(object, perms).getDenied();
+  }
+
+  /**
+   * 等待rationale结果的请求，同意后请求系统或者打开应用设置页
+   */
+  private static final class PendingRequest implements RationalePresenter.Callback {
 
-    Iterator<String> iterator = permsList.iterator();
-    while (iterator.hasNext()) {
-      String perm = iterator.next();
-      if (EasyPermissions.hasPermissions(getActivity(object), perm)) {// 如果权限已存在，则删除
-        iterator.remove();
+    private final Object object;
+    private final String[] perms;
+    private final String[] denied;
+    private final String[] allPerms;
+    private final long[] rationaleMask;
+    private final int requestCode;
+    private final long startNanos;
+    private final boolean permanentlyDenied;
+    long shownAt;
+    private boolean handled;
+
+    PendingRequest(Object object, String[] perms, String[] denied, String[] allPerms,
+        long[] rationaleMask, int requestCode, long startNanos, boolean permanentlyDenied) {
+      this.object = object;
+      this.perms = perms;
+      this.denied = denied;
+      this.allPerms = allPerms;
+      this.rationaleMask = rationaleMask;
+      this.requestCode = requestCode;
+      this.startNanos = startNanos;
+      this.permanentlyDenied = permanentlyDenied;
+    }
+
+    void execute() {
+      if (permanentlyDenied) {
+        openAppSettings(object, perms, requestCode, startNanos);
+      } else {
+        executePermissionsRequest(object, denied, allPerms, rationaleMask, requestCode,
+            startNanos);
       }
     }
 
-    return permsList.toArray(new String[] {});
+    @Override public String[] getPermissions() {
+      return perms.clone();
+    }
+
+    @Override public void onRationaleAccepted() {
+      if (handled) {
+        return;
+      }
+      handled = true;
+      reportRationaleDismissed(requestCode, true, shownAt);
+      execute();
+    }
+
+    @Override public void onRationaleDeclined() {
+      if (handled) {
+        return;
+      }
+      handled = true;
+      reportRationaleDismissed(requestCode, false, shownAt);
+      // act as if the missing permissions were denied
+      PermissionSnapshot snapshot = PermissionSnapshot.take(getActivity(object), perms);
+      dispatchPermissionsResult(requestCode, perms, snapshot.toGrantResults(), object,
+          startNanos, permanentlyDenied ? snapshot.getDeniedDangerous() : null);
+    }
+
+    @Override public void onRationaleCancelled() {
+      if (handled) {
+        return;
+      }
+      handled = true;
+      reportRationaleDismissed(requestCode, false, shownAt);
+      // like a request interrupted by the system: an empty result, nothing granted or denied
+      dispatchPermissionsResult(requestCode, NO_PERMS, NO_RESULTS, object, startNanos, null);
+    }
   }
 }
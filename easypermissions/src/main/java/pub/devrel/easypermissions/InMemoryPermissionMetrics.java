@@ -0,0 +1,251 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 内存中的{@link PermissionMetrics}实现，所有计数都是无锁的原子操作.
+ *
+ * <pre>
+ * InMemoryPermissionMetrics metrics = new InMemoryPermissionMetrics();
+ * EasyPermissions.setPermissionMetrics(metrics);
+ * ...
+ * Log.i(TAG, metrics.dump());
+ * </pre>
+ *
+ * 耗时记录在以2的幂为边界的直方图中，分位数是所在区间的上界，精度在2倍以内。
+ */
+public class InMemoryPermissionMetrics implements PermissionMetrics {
+
+  private static final int GRANTED = 0;
+  private static final int DENIED = 1;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong rationaleAccepted = new AtomicLong();
+  private final AtomicLong rationaleDeclined = new AtomicLong();
+  private final Histogram requestLatency = new Histogram();
+  private final Histogram rationaleDuration = new Histogram();
+  private final Histogram dispatchDuration = new Histogram();
+  // 每个权限的[授权次数, 拒绝次数]
+  private final ConcurrentMap<String, AtomicLongArray> permissionCounts =
+      new ConcurrentHashMap<>();
+
+  @Override public void onPermissionsRequested(int requestCode, String[] perms) {
+    requests.incrementAndGet();
+  }
+
+  @Override public void onRationaleDismissed(int requestCode, boolean accepted,
+      long durationNanos) {
+    (accepted ? rationaleAccepted : rationaleDeclined).incrementAndGet();
+    rationaleDuration.record(durationNanos);
+  }
+
+  @Override public void onPermissionsResult(PermissionResult result, long latencyNanos) {
+    if (latencyNanos >= 0) {
+      requestLatency.record(latencyNanos);
+    }
+    for (int i = 0; i < result.getGrantedCount(); i++) {
+      countsOf(result.getGranted(i)).incrementAndGet(GRANTED);
+    }
+    for (int i = 0; i < result.getDeniedCount(); i++) {
+      countsOf(result.getDenied(i)).incrementAndGet(DENIED);
+    }
+  }
+
+  @Override public void onAnnotatedMethodsDispatched(Object target, int requestCode,
+      long durationNanos) {
+    dispatchDuration.record(durationNanos);
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  public long getRationaleAcceptedCount() {
+    return rationaleAccepted.get();
+  }
+
+  public long getRationaleDeclinedCount() {
+    return rationaleDeclined.get();
+  }
+
+  public long getGrantedCount(String perm) {
+    AtomicLongArray counts = permissionCounts.get(perm);
+    return counts == null ? 0 : counts.get(GRANTED);
+  }
+
+  public long getDeniedCount(String perm) {
+    AtomicLongArray counts = permissionCounts.get(perm);
+    return counts == null ? 0 : counts.get(DENIED);
+  }
+
+  /**
+   * 从发起请求到收到结果
+   */
+  public Histogram getRequestLatency() {
+    return requestLatency;
+  }
+
+  /**
+   * rationale对话框显示的时间
+   */
+  public Histogram getRationaleDuration() {
+    return rationaleDuration;
+  }
+
+  /**
+   * 执行{@link AfterPermissionGranted}方法的时间
+   */
+  public Histogram getDispatchDuration() {
+    return dispatchDuration;
+  }
+
+  public void reset() {
+    requests.set(0);
+    rationaleAccepted.set(0);
+    rationaleDeclined.set(0);
+    requestLatency.reset();
+    rationaleDuration.reset();
+    dispatchDuration.reset();
+    permissionCounts.clear();
+  }
+
+  /**
+   * 可读的统计摘要，如打印到日志
+   */
+  public String dump() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("requests=").append(requests.get())
+        .append(" rationale(accepted=").append(rationaleAccepted.get())
+        .append(", declined=").append(rationaleDeclined.get()).append(")\n");
+    sb.append("latency    ").append(requestLatency).append('\n');
+    sb.append("rationale  ").append(rationaleDuration).append('\n');
+    sb.append("dispatch   ").append(dispatchDuration).append('\n');
+
+    Map<String, AtomicLongArray> sorted = new TreeMap<>(permissionCounts);
+    for (Map.Entry<String, AtomicLongArray> entry : sorted.entrySet()) {
+      sb.append(entry.getKey())
+          .append(" granted=").append(entry.getValue().get(GRANTED))
+          .append(" denied=").append(entry.getValue().get(DENIED)).append('\n');
+    }
+    return sb.toString();
+  }
+
+  @Override public String toString() {
+    return dump();
+  }
+
+  private AtomicLongArray countsOf(String perm) {
+    AtomicLongArray counts = permissionCounts.get(perm);
+    if (counts == null) {
+      AtomicLongArray created = new AtomicLongArray(2);
+      counts = permissionCounts.putIfAbsent(perm, created);
+      if (counts == null) {
+        counts = created;
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * 纳秒耗时的直方图，第0个桶记录0，第i个桶记录[2^(i-1), 2^i)的值，无锁.
+   */
+  public static final class Histogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+      if (nanos < 0) {
+        nanos = 0;
+      }
+      buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+      count.incrementAndGet();
+      sum.addAndGet(nanos);
+      long current;
+      while (nanos > (current = max.get())) {
+        if (max.compareAndSet(current, nanos)) {
+          break;
+        }
+      }
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getMeanNanos() {
+      long n = count.get();
+      return n == 0 ? 0 : sum.get() / n;
+    }
+
+    public long getMaxNanos() {
+      return max.get();
+    }
+
+    /**
+     * @param percentile 0~100
+     * @return 第{@code percentile}百分位所在桶的上界，没有数据返回0
+     */
+    public long getPercentileNanos(double percentile) {
+      long n = count.get();
+      if (n == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(n * percentile / 100);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += buckets.get(i);
+        if (seen >= rank && seen > 0) {
+          return i == 0 ? 0 : Math.min(max.get(), (1L << i) - 1);
+        }
+      }
+      return max.get();
+    }
+
+    void reset() {
+      for (int i = 0; i < BUCKETS; i++) {
+        buckets.set(i, 0);
+      }
+      count.set(0);
+      sum.set(0);
+      max.set(0);
+    }
+
+    @Override public String toString() {
+      return "count=" + getCount()
+          + " mean=" + millis(getMeanNanos())
+          + " p50=" + millis(getPercentileNanos(50))
+          + " p90=" + millis(getPercentileNanos(90))
+          + " p99=" + millis(getPercentileNanos(99))
+          + " max=" + millis(getMaxNanos());
+    }
+
+    private static String millis(long nanos) {
+      return nanos / 1000000 + "." + (nanos / 1000 % 1000 + 1000 + "").substring(1) + "ms";
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 通过一次{@link PackageManager#getPackageInfo}({@link PackageManager#GET_PERMISSIONS})
+ * 读取所有声明权限的授权状态，之后的检查都在缓存的数组中二分查找，不再有IPC.
+ *
+ * 缓存在下一次权限结果、{@link Activity#onResume()}时丢弃，用户可能在设置中改变了授权；
+ * 丢弃前开始的查询不会把旧的结果写回缓存。
+ * {@code requestedPermissionsFlags}是API 16才有的，更低的版本以及查询失败时使用
+ * {@link PermissionChecker#SELF_PERMISSION}。
+ *
+ * <pre>
+ * EasyPermissions.setPermissionChecker(new PackageInfoPermissionChecker(application));
+ * </pre>
+ */
+public final class PackageInfoPermissionChecker implements PermissionChecker {
+
+  private static final String TAG = "EasyPermissions";
+
+  // 按权限名排序的已声明权限，和是否已授权
+  private static final class Grants {
+
+    final String[] names;
+    final boolean[] granted;
+
+    Grants(String[] names, boolean[] granted) {
+      this.names = names;
+      this.granted = granted;
+    }
+  }
+
+  private final AtomicReference<Grants> grants = new AtomicReference<>();
+  // 每次丢弃缓存加一
+  private final AtomicInteger generation = new AtomicInteger();
+  private final AtomicInteger queryCount = new AtomicInteger();
+
+  /**
+   * @param application 用来在{@link Activity#onResume()}时丢弃缓存，传入null时只在收到权限结果时丢弃
+   */
+  public PackageInfoPermissionChecker(Application application) {
+    if (application != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+      application.registerActivityLifecycleCallbacks(new Lifecycle());
+    }
+  }
+
+  @Override public boolean isGranted(Context context, String perm) {
+    Grants current = grants.get();
+    if (current == null) {
+      int start = generation.get();
+      current = query(context);
+      if (current == null) {
+        return SELF_PERMISSION.isGranted(context, perm);
+      }
+      // 查询期间丢弃过缓存则只用于这次检查；比较和写入之间丢弃过，撤销自己的写入
+      if (start == generation.get()) {
+        grants.set(current);
+        if (start != generation.get()) {
+          grants.compareAndSet(current, null);
+        }
+      }
+    }
+
+    int i = Arrays.binarySearch(current.names, perm);
+    // 没有声明的权限不会被授权
+    return i >= 0 && current.granted[i];
+  }
+
+  @Override public void invalidate() {
+    generation.incrementAndGet();
+    grants.set(null);
+  }
+
+  /**
+   * 调用{@link PackageManager#getPackageInfo}的次数
+   */
+  public int getQueryCount() {
+    return queryCount.get();
+  }
+
+  private Grants query(Context context) {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+      return null;
+    }
+
+    PackageInfo info;
+    try {
+      queryCount.incrementAndGet();
+      info = context.getPackageManager()
+          .getPackageInfo(context.getPackageName(), PackageManager.GET_PERMISSIONS);
+    } catch (PackageManager.NameNotFoundException e) {
+      Log.w(TAG, "cannot query requested permissions", e);
+      return null;
+    }
+
+    String[] requested = info.requestedPermissions;
+    int[] flags = info.requestedPermissionsFlags;
+    if (requested == null) {
+      return new Grants(new String[0], new boolean[0]);
+    }
+    if (flags == null || flags.length != requested.length) {
+      return null;
+    }
+
+    String[] names = requested.clone();
+    Arrays.sort(names);
+    boolean[] granted = new boolean[names.length];
+    for (int i = 0; i < requested.length; i++) {
+      if ((flags[i] & PackageInfo.REQUESTED_PERMISSION_GRANTED) != 0) {
+        granted[Arrays.binarySearch(names, requested[i])] = true;
+      }
+    }
+    return new Grants(names, granted);
+  }
+
+  private final class Lifecycle implements Application.ActivityLifecycleCallbacks {
+
+    @Override public void onActivityResumed(Activity activity) {
+      invalidate();
+    }
+
+    @Override public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override public void onActivityStarted(Activity activity) {
+    }
+
+    @Override public void onActivityPaused(Activity activity) {
+    }
+
+    @Override public void onActivityStopped(Activity activity) {
+    }
+
+    @Override public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override public void onActivityDestroyed(Activity activity) {
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 本进程中已知被永久拒绝(不再询问)的权限，授权后移除.
+ *
+ * 开启了{@link PermissionHistoryStore}时，之前进程中记录的永久拒绝也会用来判断。
+ */
+final class PermanentDenials {
+
+  private static final Set<String> DENIED = new HashSet<>();
+
+  private PermanentDenials() {
+  }
+
+  static synchronized boolean contains(String perm) {
+    return DENIED.contains(perm);
+  }
+
+  /**
+   * {@code perm}是否已知被永久拒绝：本进程中已知，或者历史记录中最后一次结果是永久拒绝.
+   * 历史中的永久拒绝只来自请求前后rationale状态的变化，普通的拒绝不算
+   */
+  static boolean wasPermanentlyDenied(String perm, PermissionHistoryStore history) {
+    return contains(perm) || history != null
+        && history.getLastOutcome(perm) == PermissionHistoryStore.PERMANENTLY_DENIED;
+  }
+
+  static synchronized void addAll(String[] perms) {
+    if (perms != null) {
+      for (String perm : perms) {
+        DENIED.add(perm);
+      }
+    }
+  }
+
+  /**
+   * {@code perms}中已知永久拒绝的权限，没有返回null
+   */
+  static synchronized String[] retain(String[] perms) {
+    String[] found = null;
+    int count = 0;
+    for (String perm : perms) {
+      if (DENIED.contains(perm)) {
+        if (found == null) {
+          found = new String[perms.length];
+        }
+        found[count++] = perm;
+      }
+    }
+    return found == null ? null : Arrays.copyOf(found, count);
+  }
+
+  static synchronized void update(PermissionResult result, String[] permanentlyDenied) {
+    for (int i = 0; i < result.getGrantedCount(); i++) {
+      DENIED.remove(result.getGranted(i));
+    }
+    addAll(permanentlyDenied);
+  }
+}
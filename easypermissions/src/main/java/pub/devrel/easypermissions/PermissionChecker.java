@@ -0,0 +1,49 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.support.v4.content.ContextCompat;
+
+/**
+ * 检查普通(非特殊)权限是否已授权的后端，通过{@link EasyPermissions#setPermissionChecker}选择.
+ *
+ * 默认的{@link #SELF_PERMISSION}每个权限调用一次{@link ContextCompat#checkSelfPermission}，
+ * 每次都是一次IPC；{@link PackageInfoPermissionChecker}一次查询所有声明的权限并缓存。
+ */
+public interface PermissionChecker {
+
+  /**
+   * 每个权限一次{@link ContextCompat#checkSelfPermission}，不缓存
+   */
+  PermissionChecker SELF_PERMISSION = new PermissionChecker() {
+    @Override public boolean isGranted(Context context, String perm) {
+      return ContextCompat.checkSelfPermission(context, perm)
+          == PackageManager.PERMISSION_GRANTED;
+    }
+
+    @Override public void invalidate() {
+    }
+  };
+
+  boolean isGranted(Context context, String perm);
+
+  /**
+   * 授权状态可能变了，丢弃缓存的结果。收到权限结果、从设置页返回时由{@link EasyPermissions}调用
+   */
+  void invalidate();
+}
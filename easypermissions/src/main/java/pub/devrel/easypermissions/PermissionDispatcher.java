@@ -0,0 +1,35 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+/**
+ * 由easypermissions-compiler为含有{@link AfterPermissionGranted}方法的类生成，
+ * 类名为{@code <Class>_PermissionDispatcher}，直接调用注解方法，不需要反射.
+ *
+ * 没有生成此类时，{@link EasyPermissions}会退回到反射调用。
+ *
+ * @param <T> 含有注解方法的Activity或Fragment
+ */
+public interface PermissionDispatcher<T> {
+
+  /** 生成类的类名后缀 */
+  String SUFFIX = "_PermissionDispatcher";
+
+  /**
+   * 调用{@code target}中注解值为{@code requestCode}的所有方法
+   */
+  void dispatch(T target, int requestCode);
+}
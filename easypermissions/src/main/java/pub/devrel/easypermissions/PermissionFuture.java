@@ -0,0 +1,268 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.os.Looper;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link PermissionRequest}的结果，只完成一次.
+ *
+ * 可以通过{@link #addListener(Runnable, Executor)}或{@link #addCallback(Callback)}接收结果，
+ * 也可以在后台线程{@link #get()}等待；在主线程调用会阻塞的{@link #get()}会抛出{@link IllegalStateException}。
+ * 取消或超时后立即释放对宿主的引用。请求被中断(系统返回空结果，或者rationale没有显示、没有得到回答就被关闭)时
+ * 以{@link PermissionInterruptedException}结束，只有调用{@link #cancel(boolean)}才是取消。
+ */
+public final class PermissionFuture implements Future<PermissionRequest.Result> {
+
+  /**
+   * 在主线程回调
+   */
+  public interface Callback {
+
+    void onResult(PermissionRequest.Result result);
+
+    /**
+     * 请求被取消({@link CancellationException})、中断({@link PermissionInterruptedException})、
+     * 超时({@link TimeoutException})，或者Activity正在结束无法发出({@link IllegalStateException})
+     */
+    void onFailure(Throwable error);
+  }
+
+  private static final Executor MAIN_THREAD = new Executor() {
+    @Override public void execute(Runnable command) {
+      PermissionRequest.runOnMainThread(command);
+    }
+  };
+
+  private final int requestCode;
+  private final Receiver receiver = new Receiver();
+  private final List<Runnable> listeners = new ArrayList<>();
+  private final List<Executor> executors = new ArrayList<>();
+
+  // 以下字段由this保护
+  private boolean done;
+  private PermissionRequest.Result result;
+  private Throwable failure;
+
+  // 只在主线程访问
+  private WeakReference<PermissionHostFragment> host;
+  private Runnable timeout;
+
+  PermissionFuture(int requestCode) {
+    this.requestCode = requestCode;
+  }
+
+  EasyPermissions.PermissionResultCallbacks receiver() {
+    return receiver;
+  }
+
+  /**
+   * 请求发出时调用，在主线程
+   */
+  void attach(PermissionHostFragment host, final long timeoutMillis) {
+    this.host = new WeakReference<>(host);
+    if (timeoutMillis > 0) {
+      timeout = new Runnable() {
+        @Override public void run() {
+          complete(null, new TimeoutException(
+              "Permission request " + requestCode + " timed out after " + timeoutMillis + "ms"));
+        }
+      };
+      PermissionRequest.mainHandler().postDelayed(timeout, timeoutMillis);
+    }
+  }
+
+  /**
+   * 请求无法发出
+   */
+  void fail(Exception error) {
+    complete(null, error);
+  }
+
+  public int getRequestCode() {
+    return requestCode;
+  }
+
+  @Override public boolean cancel(boolean mayInterruptIfRunning) {
+    return complete(null, new CancellationException("Permission request cancelled"));
+  }
+
+  @Override public synchronized boolean isCancelled() {
+    return failure instanceof CancellationException;
+  }
+
+  @Override public synchronized boolean isDone() {
+    return done;
+  }
+
+  @Override public PermissionRequest.Result get() throws InterruptedException, ExecutionException {
+    synchronized (this) {
+      if (!done) {
+        checkNotMainThread();
+      }
+      while (!done) {
+        wait();
+      }
+      return getDone();
+    }
+  }
+
+  @Override public PermissionRequest.Result get(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (this) {
+      if (!done) {
+        checkNotMainThread();
+      }
+      while (!done) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new TimeoutException();
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      return getDone();
+    }
+  }
+
+  /**
+   * 完成后在{@code executor}上执行{@code listener}，已完成则立即执行
+   */
+  public void addListener(Runnable listener, Executor executor) {
+    synchronized (this) {
+      if (!done) {
+        listeners.add(listener);
+        executors.add(executor);
+        return;
+      }
+    }
+    executor.execute(listener);
+  }
+
+  /**
+   * 完成后在主线程回调{@code callback}
+   */
+  public void addCallback(final Callback callback) {
+    addListener(new Runnable() {
+      @Override public void run() {
+        PermissionRequest.Result value;
+        Throwable error;
+        synchronized (PermissionFuture.this) {
+          value = result;
+          error = failure;
+        }
+        if (error != null) {
+          callback.onFailure(error);
+        } else {
+          callback.onResult(value);
+        }
+      }
+    }, MAIN_THREAD);
+  }
+
+  private PermissionRequest.Result getDone() throws ExecutionException {
+    if (failure instanceof CancellationException) {
+      throw (CancellationException) failure;
+    }
+    if (failure != null) {
+      throw new ExecutionException(failure);
+    }
+    return result;
+  }
+
+  private boolean complete(PermissionRequest.Result value, Throwable error) {
+    List<Runnable> toRun;
+    List<Executor> runOn;
+    synchronized (this) {
+      if (done) {
+        return false;
+      }
+      done = true;
+      result = value;
+      failure = error;
+      toRun = new ArrayList<>(listeners);
+      runOn = new ArrayList<>(executors);
+      listeners.clear();
+      executors.clear();
+      notifyAll();
+    }
+
+    release();
+    for (int i = 0; i < toRun.size(); i++) {
+      runOn.get(i).execute(toRun.get(i));
+    }
+    return true;
+  }
+
+  /**
+   * 取消超时，并从host中移除receiver，不再持有宿主
+   */
+  private void release() {
+    PermissionRequest.runOnMainThread(new Runnable() {
+      @Override public void run() {
+        if (timeout != null) {
+          PermissionRequest.mainHandler().removeCallbacks(timeout);
+          timeout = null;
+        }
+        PermissionHostFragment h = host == null ? null : host.get();
+        if (h != null) {
+          h.removeTarget(receiver);
+        }
+        host = null;
+      }
+    });
+  }
+
+  private static void checkNotMainThread() {
+    if (Looper.myLooper() == Looper.getMainLooper()) {
+      throw new IllegalStateException("Cannot block the main thread waiting for permissions.");
+    }
+  }
+
+  private final class Receiver implements EasyPermissions.PermissionResultCallbacks {
+
+    @Override public void onPermissionsResult(PermissionResult result) {
+      if (result.size() == 0) {
+        complete(null, new PermissionInterruptedException(requestCode));
+        return;
+      }
+      complete(PermissionRequest.Result.of(result), null);
+    }
+
+    @Override public void onPermissionsGranted(int requestCode, List<String> perms) {
+      // 通过onPermissionsResult接收
+    }
+
+    @Override public void onPermissionsDenied(int requestCode, List<String> perms) {
+      // 通过onPermissionsResult接收
+    }
+
+    @Override public void onRequestPermissionsResult(int requestCode, String[] permissions,
+        int[] grantResults) {
+      // 结果由PermissionHostFragment转发
+    }
+  }
+}
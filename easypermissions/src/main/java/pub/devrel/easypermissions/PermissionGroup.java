@@ -0,0 +1,433 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+import android.os.Build;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * 一组权限，用bitset表示.
+ *
+ * 每个权限第一次出现时在进程内分配一个id，组内第i个long的第j位表示id为64 * i + j的权限，
+ * 不同权限的数量没有限制，常见的不超过64个时只有一个long。按SDK版本区分的权限在{@link Builder#build()}时确定一次。
+ * 包含、并集、拆分dangerous/特殊权限都是位运算，不比较字符串；
+ * 开启{@link PermissionStateCache}后，{@link #hasAll(Context)}、{@link #missing(Context)}先和缓存中已授权的id
+ * 按位与，只检查还不知道已授权的权限，都已授权时不查找权限名。
+ * id按权限在进程内第一次出现的顺序分配，{@link #getPermissions()}按id顺序返回，不一定是添加的顺序。
+ *
+ * <pre>
+ * static final PermissionGroup JPUSH = PermissionGroup.builder()
+ *     .add(READ_PHONE_STATE, WRITE_EXTERNAL_STORAGE)
+ *     .addIfSdkAtLeast(Build.VERSION_CODES.JELLY_BEAN, READ_EXTERNAL_STORAGE)
+ *     .build();
+ * </pre>
+ */
+public final class PermissionGroup {
+
+  private static final long[] NO_BITS = {};
+
+  public static final PermissionGroup EMPTY = new PermissionGroup(NO_BITS);
+
+  // 进程内的权限id表，只增不减
+  private static final HashMap<String, Integer> ids = new HashMap<>();
+  // 下标是id，写时复制，读取不加锁
+  private static volatile String[] names = {};
+  // 特殊权限的id，写时复制
+  private static volatile long[] specialBits = NO_BITS;
+
+  // 末尾没有为0的long
+  private final long[] bits;
+  private volatile String[] permissions;
+
+  private PermissionGroup(long[] bits) {
+    this.bits = bits;
+  }
+
+  public static PermissionGroup of(String... perms) {
+    return ofBits(bitsOf(perms));
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * 权限的id，第一次出现时分配
+   */
+  static int idOf(String perm) {
+    synchronized (ids) {
+      Integer id = ids.get(perm);
+      if (id != null) {
+        return id;
+      }
+
+      int newId = names.length;
+      String[] grown = Arrays.copyOf(names, newId + 1);
+      grown[newId] = perm;
+      ids.put(perm, newId);
+      names = grown;
+      if (SpecialPermission.get(perm) != null) {
+        specialBits = or(specialBits, bitOf(newId));
+      }
+      return newId;
+    }
+  }
+
+  /**
+   * 之前出现过的权限后来注册成了特殊权限
+   */
+  static void onSpecialRegistered(String perm) {
+    synchronized (ids) {
+      Integer id = ids.get(perm);
+      if (id != null) {
+        specialBits = or(specialBits, bitOf(id));
+      }
+    }
+  }
+
+  private static String nameOf(int id) {
+    return names[id];
+  }
+
+  private static long[] bitOf(int id) {
+    long[] bits = new long[(id >>> 6) + 1];
+    bits[id >>> 6] = 1L << id;
+    return bits;
+  }
+
+  private static long[] bitsOf(String[] perms) {
+    long[] bits = NO_BITS;
+    for (String perm : perms) {
+      int id = idOf(perm);
+      int word = id >>> 6;
+      if (word >= bits.length) {
+        bits = Arrays.copyOf(bits, word + 1);
+      }
+      bits[word] |= 1L << id;
+    }
+    return bits;
+  }
+
+  private static long word(long[] bits, int word) {
+    return word < bits.length ? bits[word] : 0L;
+  }
+
+  /**
+   * 去掉末尾为0的long
+   */
+  private static long[] trim(long[] bits) {
+    int length = bits.length;
+    while (length > 0 && bits[length - 1] == 0L) {
+      length--;
+    }
+    return length == bits.length ? bits : length == 0 ? NO_BITS : Arrays.copyOf(bits, length);
+  }
+
+  static long[] or(long[] a, long[] b) {
+    if (a.length < b.length) {
+      long[] t = a;
+      a = b;
+      b = t;
+    }
+    long[] result = a.clone();
+    for (int i = 0; i < b.length; i++) {
+      result[i] |= b[i];
+    }
+    return result;
+  }
+
+  static long[] andNot(long[] a, long[] b) {
+    long[] result = a.clone();
+    for (int i = 0; i < Math.min(a.length, b.length); i++) {
+      result[i] &= ~b[i];
+    }
+    return trim(result);
+  }
+
+  private static long[] and(long[] a, long[] b) {
+    long[] result = Arrays.copyOf(a, Math.min(a.length, b.length));
+    for (int i = 0; i < result.length; i++) {
+      result[i] &= b[i];
+    }
+    return trim(result);
+  }
+
+  /**
+   * 第i个long的第j位对应id为64 * i + j的权限，每次返回新的数组
+   */
+  public long[] getBits() {
+    return bits.clone();
+  }
+
+  long[] bits() {
+    return bits;
+  }
+
+  public int size() {
+    int size = 0;
+    for (long word : bits) {
+      size += Long.bitCount(word);
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return bits.length == 0;
+  }
+
+  public boolean contains(String perm) {
+    Integer id;
+    synchronized (ids) {
+      id = ids.get(perm);
+    }
+    return id != null && (word(bits, id >>> 6) & (1L << id)) != 0L;
+  }
+
+  public boolean containsAll(PermissionGroup other) {
+    return containsAll(bits, other.bits);
+  }
+
+  private static boolean containsAll(long[] a, long[] b) {
+    for (int i = 0; i < b.length; i++) {
+      if ((b[i] & ~word(a, i)) != 0L) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public PermissionGroup union(PermissionGroup other) {
+    return with(or(bits, other.bits));
+  }
+
+  public PermissionGroup minus(PermissionGroup other) {
+    return with(andNot(bits, other.bits));
+  }
+
+  /**
+   * 需要运行时申请的普通权限
+   */
+  public PermissionGroup dangerous() {
+    return with(andNot(bits, specialBits));
+  }
+
+  /**
+   * 需要开启Activity申请的{@link SpecialPermission}
+   */
+  public PermissionGroup special() {
+    return with(and(bits, specialBits));
+  }
+
+  /**
+   * 组内的权限，每次返回新的数组. 按id顺序，即权限在进程内第一次出现的顺序，不一定是添加的顺序
+   */
+  public String[] getPermissions() {
+    return permissions().clone();
+  }
+
+  /**
+   * 是否已经拥有组内的全部权限，遇到第一个未授权的权限就返回
+   */
+  public boolean hasAll(Context context) {
+    PermissionStateCache cache = PermissionStateCache.getInstance();
+    long[] granted = cache.getGrantedIds();
+    if (containsAll(granted, bits)) {
+      return true;
+    }
+
+    int generation = cache.generation();
+    long[] special = specialBits;
+    long[] confirmed = null;
+    for (int word = 0; word < bits.length; word++) {
+      for (long b = bits[word] & ~word(granted, word); b != 0L; b &= b - 1) {
+        int bit = Long.numberOfTrailingZeros(b);
+        if (!PermissionSnapshot.isGranted(context, nameOf((word << 6) + bit))) {
+          cache.putGrantedIds(confirmed, generation);
+          return false;
+        }
+        // 特殊权限不缓存
+        if ((word(special, word) & (1L << bit)) == 0L) {
+          if (confirmed == null) {
+            confirmed = new long[bits.length];
+          }
+          confirmed[word] |= 1L << bit;
+        }
+      }
+    }
+    cache.putGrantedIds(confirmed, generation);
+    return true;
+  }
+
+  /**
+   * 组内还没有授权的权限
+   */
+  public PermissionGroup missing(Context context) {
+    return with(missingBits(context, bits));
+  }
+
+  /**
+   * {@code bits}中还没有授权的权限
+   */
+  static long[] missingBits(Context context, long[] bits) {
+    PermissionStateCache cache = PermissionStateCache.getInstance();
+    long[] granted = cache.getGrantedIds();
+    if (containsAll(granted, bits)) {
+      return NO_BITS;
+    }
+
+    int generation = cache.generation();
+    long[] special = specialBits;
+    long[] missing = null;
+    long[] confirmed = null;
+    for (int word = 0; word < bits.length; word++) {
+      long unknown = bits[word] & ~word(granted, word);
+      long missingWord = 0L;
+      for (long b = unknown; b != 0L; b &= b - 1) {
+        int bit = Long.numberOfTrailingZeros(b);
+        if (!PermissionSnapshot.isGranted(context, nameOf((word << 6) + bit))) {
+          missingWord |= 1L << bit;
+        }
+      }
+      // 特殊权限不缓存
+      long confirmedWord = unknown & ~missingWord & ~word(special, word);
+      if (confirmedWord != 0L) {
+        if (confirmed == null) {
+          confirmed = new long[bits.length];
+        }
+        confirmed[word] = confirmedWord;
+      }
+      if (missingWord != 0L) {
+        if (missing == null) {
+          missing = new long[bits.length];
+        }
+        missing[word] = missingWord;
+      }
+    }
+    cache.putGrantedIds(confirmed, generation);
+    return missing == null ? NO_BITS : trim(missing);
+  }
+
+  /**
+   * 不读取缓存重新检查{@code bits}中的权限，返回没有授权的；
+   * 缓存中记录为已授权、现在没有授权的权限从缓存中移除，其他缓存不变
+   */
+  static long[] recheckMissingBits(Context context, long[] bits) {
+    PermissionStateCache cache = PermissionStateCache.getInstance();
+    long[] missing = null;
+    for (int word = 0; word < bits.length; word++) {
+      for (long b = bits[word]; b != 0L; b &= b - 1) {
+        int bit = Long.numberOfTrailingZeros(b);
+        int id = (word << 6) + bit;
+        String perm = nameOf(id);
+        if (!PermissionSnapshot.recheck(context, perm)) {
+          cache.invalidate(perm, id);
+          if (missing == null) {
+            missing = new long[bits.length];
+          }
+          missing[word] |= 1L << bit;
+        }
+      }
+    }
+    return missing == null ? NO_BITS : trim(missing);
+  }
+
+  static PermissionGroup ofBits(long[] bits) {
+    bits = trim(bits);
+    return bits.length == 0 ? EMPTY : new PermissionGroup(bits);
+  }
+
+  private PermissionGroup with(long[] newBits) {
+    if (Arrays.equals(newBits, bits)) {
+      return this;
+    }
+    return newBits.length == 0 ? EMPTY : new PermissionGroup(newBits);
+  }
+
+  private String[] permissions() {
+    String[] result = permissions;
+    if (result == null) {
+      result = new String[size()];
+      int i = 0;
+      for (int word = 0; word < bits.length; word++) {
+        for (long b = bits[word]; b != 0L; b &= b - 1) {
+          result[i++] = nameOf((word << 6) + Long.numberOfTrailingZeros(b));
+        }
+      }
+      permissions = result;
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof PermissionGroup && Arrays.equals(((PermissionGroup) o).bits, bits);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(bits);
+  }
+
+  @Override
+  public String toString() {
+    return "PermissionGroup" + Arrays.toString(permissions());
+  }
+
+  public static final class Builder {
+
+    private long[] bits = NO_BITS;
+
+    private Builder() {
+    }
+
+    public Builder add(String... perms) {
+      bits = or(bits, bitsOf(perms));
+      return this;
+    }
+
+    public Builder add(PermissionGroup group) {
+      bits = or(bits, group.bits);
+      return this;
+    }
+
+    /**
+     * 只在{@link Build.VERSION#SDK_INT} >= {@code sdkInt}时加入{@code perms}
+     */
+    public Builder addIfSdkAtLeast(int sdkInt, String... perms) {
+      if (Build.VERSION.SDK_INT >= sdkInt) {
+        bits = or(bits, bitsOf(perms));
+      }
+      return this;
+    }
+
+    /**
+     * 只在{@link Build.VERSION#SDK_INT} < {@code sdkInt}时加入{@code perms}
+     */
+    public Builder addIfSdkBelow(int sdkInt, String... perms) {
+      if (Build.VERSION.SDK_INT < sdkInt) {
+        bits = or(bits, bitsOf(perms));
+      }
+      return this;
+    }
+
+    public PermissionGroup build() {
+      return ofBits(bits);
+    }
+  }
+}
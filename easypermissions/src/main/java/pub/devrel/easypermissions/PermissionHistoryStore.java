@@ -0,0 +1,588 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 持久化的权限请求历史，记录每个权限被授权、拒绝、永久拒绝的次数，默认不开启.
+ *
+ * <pre>
+ * EasyPermissions.setPermissionHistoryStore(PermissionHistoryStore.open(context));
+ * </pre>
+ *
+ * 记录以紧凑的二进制格式追加到files目录下一个内存映射的文件中，不会整体重写文件。
+ * 调用线程只更新内存中的计数，所有文件操作(打开时读取文件、追加、扩容、压缩)都在后台线程进行，
+ * 不和调用线程竞争锁；打开后在后台线程读取文件，加载完成前的查询只包含本进程记录的结果，查询都是O(1)。
+ * 文件超过{@link #COMPACT_THRESHOLD}后在后台线程压缩为每个权限一条汇总记录。线程安全。
+ *
+ * 文件格式：MAGIC、VERSION，之后是记录，每条记录第一个字节是类型，0表示结束：
+ * <ul>
+ * <li>DEFINE: short id, short length, UTF-8的权限名</li>
+ * <li>EVENT: short id, byte outcome, long 时间</li>
+ * <li>SUMMARY: short id, int 授权次数, int 拒绝次数, int 永久拒绝次数, byte 最后结果, long 最后时间</li>
+ * </ul>
+ * 类型字节在记录的其余部分写完后才写入，写到一半进程被杀时这条记录会被忽略。
+ */
+public final class PermissionHistoryStore {
+
+  public static final int GRANTED = 1;
+  public static final int DENIED = 2;
+  /** 拒绝并选择了不再询问 */
+  public static final int PERMANENTLY_DENIED = 3;
+
+  static final String FILE_NAME = "easypermissions_history";
+  static final int COMPACT_THRESHOLD = 64 * 1024;
+
+  private static final String TAG = "PermissionHistoryStore";
+  private static final int MAGIC = 0x45504853;// EPHS
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+  private static final int INITIAL_CAPACITY = 16 * 1024;
+
+  private static final byte TYPE_END = 0;
+  private static final byte TYPE_DEFINE = 1;
+  private static final byte TYPE_EVENT = 2;
+  private static final byte TYPE_SUMMARY = 3;
+
+  private static final int EVENT_SIZE = 1 + 2 + 1 + 8;
+  private static final int SUMMARY_SIZE = 1 + 2 + 4 + 4 + 4 + 1 + 8;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Map<String, PermissionHistoryStore> STORES = new HashMap<>();
+  private static final ExecutorService EXECUTOR =
+      Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "EasyPermissions-history");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  private final File file;
+  private final Runnable flush = new Runnable() {
+    @Override public void run() {
+      flush();
+    }
+  };
+
+  // 以下字段由this保护，只在内存中
+  private final Map<String, Entry> index = new HashMap<>();
+  private boolean loaded;
+  private boolean clearedBeforeLoad;
+  // 还没有写入文件的记录，后台线程整批取走，和spare交替使用
+  private Batch pending = new Batch();
+  private Batch spare = new Batch();
+  private boolean flushScheduled;
+
+  // 以下字段只在EXECUTOR线程访问，和文件内容一致
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private final Map<String, Entry> diskIndex = new HashMap<>();
+  private final List<Entry> diskEntries = new ArrayList<>();// 按id
+
+  private PermissionHistoryStore(File file) {
+    this.file = file;
+  }
+
+  /**
+   * 打开App的历史记录，同一个进程中返回同一个实例；文件在后台线程加载
+   */
+  public static PermissionHistoryStore open(Context context) {
+    return open(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+  }
+
+  static PermissionHistoryStore open(File file) {
+    synchronized (STORES) {
+      String path = file.getAbsolutePath();
+      PermissionHistoryStore store = STORES.get(path);
+      if (store == null) {
+        store = new PermissionHistoryStore(file);
+        STORES.put(path, store);
+        final PermissionHistoryStore loading = store;
+        EXECUTOR.execute(new Runnable() {
+          @Override public void run() {
+            loading.load();
+          }
+        });
+      }
+      return store;
+    }
+  }
+
+  /**
+   * 记录一次结果，时间为当前时间. 只更新内存，文件在后台线程写入
+   *
+   * @param outcome {@link #GRANTED}、{@link #DENIED}或{@link #PERMANENTLY_DENIED}
+   */
+  public synchronized void record(String permission, int outcome) {
+    if (outcome < GRANTED || outcome > PERMANENTLY_DENIED) {
+      throw new IllegalArgumentException("Unknown outcome " + outcome);
+    }
+    long time = System.currentTimeMillis();
+    entryOf(index, permission).apply(outcome, time);
+    pending.add(permission, outcome, time);
+    if (!flushScheduled) {
+      flushScheduled = true;
+      EXECUTOR.execute(flush);
+    }
+  }
+
+  /**
+   * 记录一次请求的结果，{@code permanentlyDenied}中的权限记为永久拒绝
+   */
+  synchronized void record(PermissionResult result, String[] permanentlyDenied) {
+    for (int i = 0; i < result.getGrantedCount(); i++) {
+      record(result.getGranted(i), GRANTED);
+    }
+    for (int i = 0; i < result.getDeniedCount(); i++) {
+      String perm = result.getDenied(i);
+      record(perm, contains(permanentlyDenied, perm) ? PERMANENTLY_DENIED : DENIED);
+    }
+  }
+
+  /**
+   * 收到结果的总次数
+   */
+  public synchronized int getRequestCount(String permission) {
+    Entry entry = index.get(permission);
+    return entry == null ? 0 : entry.granted + entry.denied + entry.permanentlyDenied;
+  }
+
+  public synchronized int getGrantedCount(String permission) {
+    Entry entry = index.get(permission);
+    return entry == null ? 0 : entry.granted;
+  }
+
+  /**
+   * 拒绝的次数，不包括永久拒绝
+   */
+  public synchronized int getDeniedCount(String permission) {
+    Entry entry = index.get(permission);
+    return entry == null ? 0 : entry.denied;
+  }
+
+  public synchronized int getPermanentlyDeniedCount(String permission) {
+    Entry entry = index.get(permission);
+    return entry == null ? 0 : entry.permanentlyDenied;
+  }
+
+  /**
+   * @return 最后一次的结果，没有记录返回0
+   */
+  public synchronized int getLastOutcome(String permission) {
+    Entry entry = index.get(permission);
+    return entry == null ? 0 : entry.lastOutcome;
+  }
+
+  /**
+   * @return 最后一次结果的时间({@link System#currentTimeMillis()})，没有记录返回0
+   */
+  public synchronized long getLastTime(String permission) {
+    Entry entry = index.get(permission);
+    return entry == null ? 0 : entry.lastTime;
+  }
+
+  /**
+   * 删除所有记录，文件在后台线程重写
+   */
+  public synchronized void clear() {
+    index.clear();
+    if (!loaded) {
+      clearedBeforeLoad = true;
+    }
+    pending.clear();
+    if (!flushScheduled) {
+      flushScheduled = true;
+      EXECUTOR.execute(flush);
+    }
+  }
+
+  private static Entry entryOf(Map<String, Entry> index, String permission) {
+    Entry entry = index.get(permission);
+    if (entry == null) {
+      entry = new Entry(index.size(), permission);
+      index.put(permission, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * 后台线程：读取文件，把历史加到内存中的计数上
+   */
+  private void load() {
+    try {
+      File dir = file.getParentFile();
+      if (dir != null && !dir.exists() && !dir.mkdirs()) {
+        throw new IOException("Cannot create " + dir);
+      }
+      channel = new RandomAccessFile(file, "rw").getChannel();
+      long size = channel.size();
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+          Math.max(INITIAL_CAPACITY, size));
+      if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        rewrite();
+      } else {
+        buffer.position(HEADER_SIZE);
+        readRecords();
+      }
+    } catch (IOException | RuntimeException e) {
+      // 文件不可用时只在内存中记录
+      Log.w(TAG, "Cannot open " + file, e);
+      closeQuietly();
+    }
+
+    synchronized (this) {
+      loaded = true;
+      if (clearedBeforeLoad) {// 文件在下一次flush时清空
+        return;
+      }
+      // 打开前本进程记录的结果已经在内存中
+      for (Entry disk : diskEntries) {
+        entryOf(index, disk.permission).merge(disk);
+      }
+    }
+  }
+
+  /**
+   * 后台线程：取走等待写入的记录，在锁外写入文件
+   */
+  private void flush() {
+    Batch batch;
+    synchronized (this) {
+      batch = pending;
+      pending = spare != null ? spare : new Batch();
+      spare = null;
+      flushScheduled = false;
+    }
+
+    if (batch.cleared) {
+      diskIndex.clear();
+      diskEntries.clear();
+      if (buffer != null) {
+        rewrite();
+      }
+    }
+    for (int i = 0; i < batch.size; i++) {
+      append(batch.perms[i], batch.outcomes[i], batch.times[i]);
+    }
+    if (buffer != null && buffer.position() >= COMPACT_THRESHOLD) {
+      rewrite();
+    }
+
+    batch.reset();
+    synchronized (this) {
+      spare = batch;
+    }
+  }
+
+  private void append(String permission, int outcome, long time) {
+    Entry entry = diskIndex.get(permission);
+    if (entry == null) {
+      entry = new Entry(diskEntries.size(), permission);
+      diskIndex.put(permission, entry);
+      diskEntries.add(entry);
+      if (buffer != null) {
+        writeDefine(entry);
+      }
+    }
+    entry.apply(outcome, time);
+    if (buffer == null || !ensureCapacity(EVENT_SIZE)) {
+      return;
+    }
+    int position = buffer.position();
+    buffer.position(position + 1);
+    buffer.putShort((short) entry.id);
+    buffer.put((byte) outcome);
+    buffer.putLong(time);
+    buffer.put(position, TYPE_EVENT);
+  }
+
+  private void writeDefine(Entry entry) {
+    byte[] name = entry.permission.getBytes(UTF_8);
+    if (!ensureCapacity(1 + 2 + 2 + name.length)) {
+      return;
+    }
+    int position = buffer.position();
+    buffer.position(position + 1);
+    buffer.putShort((short) entry.id);
+    buffer.putShort((short) name.length);
+    buffer.put(name);
+    buffer.put(position, TYPE_DEFINE);
+  }
+
+  private void readRecords() {
+    while (buffer.remaining() > 0) {
+      int position = buffer.position();
+      byte type = buffer.get();
+      if (type == TYPE_DEFINE && buffer.remaining() >= 4) {
+        int id = buffer.getShort();
+        int length = buffer.getShort();
+        if (id != diskEntries.size() || length < 0 || buffer.remaining() < length) {
+          buffer.position(position);
+          break;
+        }
+        byte[] name = new byte[length];
+        buffer.get(name);
+        Entry entry = new Entry(id, new String(name, UTF_8));
+        diskIndex.put(entry.permission, entry);
+        diskEntries.add(entry);
+      } else if (type == TYPE_EVENT && buffer.remaining() >= EVENT_SIZE - 1) {
+        int id = buffer.getShort();
+        int outcome = buffer.get();
+        long time = buffer.getLong();
+        if (id >= 0 && id < diskEntries.size()) {
+          diskEntries.get(id).apply(outcome, time);
+        }
+      } else if (type == TYPE_SUMMARY && buffer.remaining() >= SUMMARY_SIZE - 1) {
+        int id = buffer.getShort();
+        int granted = buffer.getInt();
+        int denied = buffer.getInt();
+        int permanentlyDenied = buffer.getInt();
+        int lastOutcome = buffer.get();
+        long lastTime = buffer.getLong();
+        if (id >= 0 && id < diskEntries.size()) {
+          Entry entry = diskEntries.get(id);
+          entry.granted += granted;
+          entry.denied += denied;
+          entry.permanentlyDenied += permanentlyDenied;
+          entry.lastOutcome = lastOutcome;
+          entry.lastTime = lastTime;
+        }
+      } else {// TYPE_END或者不完整的记录
+        buffer.position(position);
+        break;
+      }
+    }
+  }
+
+  private boolean ensureCapacity(int bytes) {
+    if (buffer.remaining() >= bytes) {
+      return true;
+    }
+    try {
+      MappedByteBuffer old = buffer;
+      int position = old.position();
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+          Math.max(old.capacity() * 2L, position + bytes));
+      buffer.position(position);
+      unmap(old);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      Log.w(TAG, "Cannot grow " + file, e);
+      closeQuietly();
+      return false;
+    }
+  }
+
+  /**
+   * 把文件中的计数写成一个新文件：每个权限一条DEFINE和一条SUMMARY，再替换原文件
+   */
+  private void rewrite() {
+    File tmp = new File(file.getPath() + ".tmp");
+    int size = HEADER_SIZE + 1;
+    for (Entry entry : diskEntries) {
+      size += 5 + entry.permission.getBytes(UTF_8).length + SUMMARY_SIZE;
+    }
+
+    ByteBuffer out = ByteBuffer.allocate(size);
+    out.putInt(MAGIC).putInt(VERSION);
+    for (Entry entry : diskEntries) {
+      byte[] name = entry.permission.getBytes(UTF_8);
+      out.put(TYPE_DEFINE).putShort((short) entry.id).putShort((short) name.length).put(name);
+      out.put(TYPE_SUMMARY).putShort((short) entry.id)
+          .putInt(entry.granted).putInt(entry.denied).putInt(entry.permanentlyDenied)
+          .put((byte) entry.lastOutcome).putLong(entry.lastTime);
+    }
+    out.put(TYPE_END);
+    out.flip();
+
+    try {
+      RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+      try {
+        raf.setLength(0);
+        raf.getChannel().write(out);
+        raf.getFD().sync();
+      } finally {
+        raf.close();
+      }
+
+      closeQuietly();
+      if (!tmp.renameTo(file)) {
+        throw new IOException("Cannot rename " + tmp);
+      }
+      channel = new RandomAccessFile(file, "rw").getChannel();
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+          Math.max(INITIAL_CAPACITY, size * 2L));
+      buffer.position(size - 1);// 覆盖TYPE_END
+    } catch (IOException | RuntimeException e) {
+      Log.w(TAG, "Cannot rewrite " + file, e);
+      closeQuietly();
+    }
+  }
+
+  private void closeQuietly() {
+    if (buffer != null) {
+      unmap(buffer);
+      buffer = null;
+    }
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException ignored) {
+      }
+      channel = null;
+    }
+  }
+
+  /**
+   * 立即释放映射，否则要等{@code buffer}被回收. 没有公开的API，不可用时什么也不做；之后不能再访问{@code buffer}
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      // Android
+      Class<?> nioUtils = Class.forName("java.nio.NioUtils");
+      nioUtils.getMethod("freeDirectBuffer", ByteBuffer.class).invoke(null, buffer);
+      return;
+    } catch (Exception | LinkageError ignored) {
+    }
+    try {
+      // JVM 8
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch (Exception | LinkageError ignored) {
+    }
+  }
+
+  private static boolean contains(String[] perms, String perm) {
+    if (perms != null) {
+      for (String p : perms) {
+        if (p.equals(perm)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 等待写入的一批记录，数组复用
+   */
+  private static final class Batch {
+
+    boolean cleared;
+    String[] perms = new String[16];
+    int[] outcomes = new int[16];
+    long[] times = new long[16];
+    int size;
+
+    void add(String perm, int outcome, long time) {
+      if (size == perms.length) {
+        perms = Arrays.copyOf(perms, size * 2);
+        outcomes = Arrays.copyOf(outcomes, size * 2);
+        times = Arrays.copyOf(times, size * 2);
+      }
+      perms[size] = perm;
+      outcomes[size] = outcome;
+      times[size] = time;
+      size++;
+    }
+
+    /**
+     * 之前的记录不再写入，写入之后的记录前先清空文件
+     */
+    void clear() {
+      Arrays.fill(perms, 0, size, null);
+      size = 0;
+      cleared = true;
+    }
+
+    void reset() {
+      Arrays.fill(perms, 0, size, null);
+      size = 0;
+      cleared = false;
+    }
+  }
+
+  private static final class Entry {
+
+    final int id;
+    final String permission;
+    int granted;
+    int denied;
+    int permanentlyDenied;
+    int lastOutcome;
+    long lastTime;
+
+    Entry(int id, String permission) {
+      this.id = id;
+      this.permission = permission;
+    }
+
+    void apply(int outcome, long time) {
+      switch (outcome) {
+        case GRANTED:
+          granted++;
+          break;
+        case DENIED:
+          denied++;
+          break;
+        case PERMANENTLY_DENIED:
+          permanentlyDenied++;
+          break;
+        default:
+          return;
+      }
+      lastOutcome = outcome;
+      lastTime = time;
+    }
+
+    /**
+     * 加上{@code other}的计数，最后结果取较晚的一个
+     */
+    void merge(Entry other) {
+      granted += other.granted;
+      denied += other.denied;
+      permanentlyDenied += other.permanentlyDenied;
+      if (other.lastTime > lastTime) {
+        lastOutcome = other.lastOutcome;
+        lastTime = other.lastTime;
+      }
+    }
+  }
+}
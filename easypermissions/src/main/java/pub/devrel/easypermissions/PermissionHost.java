@@ -0,0 +1,243 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Build;
+import android.support.v4.app.ActivityCompat;
+import android.support.v4.app.Fragment;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 请求权限的宿主适配器，把EasyPermissions需要的几个操作转发给具体的宿主类型.
+ *
+ * 内置了{@link Activity}、support {@link Fragment}、{@code android.app.Fragment}(API 11+)和
+ * {@link Provider}；其他宿主可以通过{@link #register(Class, PermissionHost)}添加，注册的类型也可以是接口，
+ * 如生命周期组件的{@code LifecycleOwner}。
+ * 每个宿主类只解析一次，结果缓存，之后每个操作只是一次虚方法调用，不再逐个判断类型。
+ *
+ * @param <T> 宿主类型
+ */
+public abstract class PermissionHost<T> {
+
+  /**
+   * 绑定在某个Activity或Fragment上的组件(如Presenter、控制器)，由它所在的宿主代为请求.
+   * 宿主需要把结果以这个组件转发给{@link EasyPermissions}：
+   * {@code EasyPermissions.onRequestPermissionsResult(requestCode, permissions, grantResults, component)}
+   */
+  public interface Provider {
+
+    /**
+     * @return Activity、Fragment或者其他已注册类型的宿主
+     */
+    Object getPermissionHost();
+  }
+
+  // 未找到适配器时缓存的占位
+  private static final PermissionHost<Object> NONE = new PermissionHost<Object>() {
+    @Override public Activity getActivity(Object host) {
+      return null;
+    }
+
+    @Override public void requestPermissions(Object host, String[] perms, int requestCode) {
+    }
+
+    @Override public boolean shouldShowRequestPermissionRationale(Object host, String perm) {
+      return false;
+    }
+
+    @Override public void startActivityForResult(Object host, Intent intent, int requestCode) {
+    }
+  };
+
+  private static final HashMap<Class<?>, PermissionHost<?>> registered = new HashMap<>();
+  private static final ConcurrentHashMap<Class<?>, PermissionHost<?>> cache =
+      new ConcurrentHashMap<>();
+
+  static {
+    register(Activity.class, new ActivityHost());
+    register(Fragment.class, new SupportFragmentHost());
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+      register(android.app.Fragment.class, new FrameworkFragmentHost());
+    }
+    register(Provider.class, new ProviderHost());
+  }
+
+  public abstract Activity getActivity(T host);
+
+  public abstract void requestPermissions(T host, String[] perms, int requestCode);
+
+  public abstract boolean shouldShowRequestPermissionRationale(T host, String perm);
+
+  public abstract void startActivityForResult(T host, Intent intent, int requestCode);
+
+  /**
+   * 为{@code type}及其子类(实现类)添加或替换适配器.
+   * 查找时先沿类的继承链匹配类，再匹配接口，所以Activity、Fragment的子类总是使用它们自己的适配器
+   */
+  public static synchronized <T> void register(Class<T> type, PermissionHost<? super T> host) {
+    registered.put(type, host);
+    cache.clear();
+  }
+
+  /**
+   * @return {@code object}的适配器，不支持的类型返回null
+   */
+  @SuppressWarnings("unchecked")
+  static PermissionHost<Object> of(Object object) {
+    if (object == null) {
+      return null;
+    }
+
+    PermissionHost<?> host = cache.get(object.getClass());
+    if (host == null) {
+      host = resolve(object.getClass());
+    }
+    return host != NONE ? (PermissionHost<Object>) host : null;
+  }
+
+  private static synchronized PermissionHost<?> resolve(Class<?> clazz) {
+    PermissionHost<?> host = null;
+    for (Class<?> c = clazz; c != null && host == null; c = c.getSuperclass()) {
+      host = registered.get(c);
+    }
+    for (Class<?> c = clazz; c != null && host == null; c = c.getSuperclass()) {
+      host = findInterface(c.getInterfaces());
+    }
+    if (host == null) {
+      host = NONE;
+    }
+    cache.put(clazz, host);
+    return host;
+  }
+
+  private static PermissionHost<?> findInterface(Class<?>[] interfaces) {
+    for (Class<?> type : interfaces) {
+      PermissionHost<?> host = registered.get(type);
+      if (host == null) {
+        host = findInterface(type.getInterfaces());
+      }
+      if (host != null) {
+        return host;
+      }
+    }
+    return null;
+  }
+
+  private static final class ActivityHost extends PermissionHost<Activity> {
+
+    @Override public Activity getActivity(Activity host) {
+      return host;
+    }
+
+    @Override public void requestPermissions(Activity host, String[] perms, int requestCode) {
+      ActivityCompat.requestPermissions(host, perms, requestCode);
+    }
+
+    @Override public boolean shouldShowRequestPermissionRationale(Activity host, String perm) {
+      return ActivityCompat.shouldShowRequestPermissionRationale(host, perm);
+    }
+
+    @Override public void startActivityForResult(Activity host, Intent intent, int requestCode) {
+      host.startActivityForResult(intent, requestCode);
+    }
+  }
+
+  private static final class SupportFragmentHost extends PermissionHost<Fragment> {
+
+    @Override public Activity getActivity(Fragment host) {
+      return host.getActivity();
+    }
+
+    @Override public void requestPermissions(Fragment host, String[] perms, int requestCode) {
+      host.requestPermissions(perms, requestCode);
+    }
+
+    @Override public boolean shouldShowRequestPermissionRationale(Fragment host, String perm) {
+      return host.shouldShowRequestPermissionRationale(perm);
+    }
+
+    @Override public void startActivityForResult(Fragment host, Intent intent, int requestCode) {
+      host.startActivityForResult(intent, requestCode);
+    }
+  }
+
+  /**
+   * {@code android.app.Fragment}的权限方法是API 23才有的，更低的版本由所在的Activity代为请求，
+   * 此时权限在安装时已经授予，结果总是已授权
+   */
+  private static final class FrameworkFragmentHost extends PermissionHost<android.app.Fragment> {
+
+    @Override public Activity getActivity(android.app.Fragment host) {
+      return host.getActivity();
+    }
+
+    @Override public void requestPermissions(android.app.Fragment host, String[] perms,
+        int requestCode) {
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+        host.requestPermissions(perms, requestCode);
+      } else {
+        ActivityCompat.requestPermissions(host.getActivity(), perms, requestCode);
+      }
+    }
+
+    @Override public boolean shouldShowRequestPermissionRationale(android.app.Fragment host,
+        String perm) {
+      return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+          && host.shouldShowRequestPermissionRationale(perm);
+    }
+
+    @Override public void startActivityForResult(android.app.Fragment host, Intent intent,
+        int requestCode) {
+      host.startActivityForResult(intent, requestCode);
+    }
+  }
+
+  private static final class ProviderHost extends PermissionHost<Provider> {
+
+    private static PermissionHost<Object> delegate(Object host) {
+      PermissionHost<Object> delegate = of(host);
+      if (delegate == null) {
+        throw new IllegalArgumentException("Unsupported permission host: " + host);
+      }
+      return delegate;
+    }
+
+    @Override public Activity getActivity(Provider host) {
+      Object delegate = host.getPermissionHost();
+      PermissionHost<Object> adapter = of(delegate);
+      return adapter != null ? adapter.getActivity(delegate) : null;
+    }
+
+    @Override public void requestPermissions(Provider host, String[] perms, int requestCode) {
+      Object delegate = host.getPermissionHost();
+      delegate(delegate).requestPermissions(delegate, perms, requestCode);
+    }
+
+    @Override public boolean shouldShowRequestPermissionRationale(Provider host, String perm) {
+      Object delegate = host.getPermissionHost();
+      return delegate(delegate).shouldShowRequestPermissionRationale(delegate, perm);
+    }
+
+    @Override public void startActivityForResult(Provider host, Intent intent, int requestCode) {
+      Object delegate = host.getPermissionHost();
+      delegate(delegate).startActivityForResult(delegate, intent, requestCode);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentActivity;
+import android.support.v4.app.FragmentManager;
+import android.util.SparseArray;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 没有界面的Fragment，每个Activity只添加一次，直接接收权限请求和特殊权限的结果.
+ *
+ * 通过{@link EasyPermissions#requestPermissions(android.content.Context, Object, String, int, String...)}
+ * 发起的请求都由它代为发出，宿主不需要重写{@code onRequestPermissionsResult}、{@code onActivityResult}转发，
+ * 也不需要实现{@link EasyPermissions.PermissionCallbacks}。
+ * 结果会交给发起请求时的{@code target}：实现了回调接口则回调，并执行它的{@link AfterPermissionGranted}方法。
+ *
+ * 每个请求以自己分配的requestCode发出，调用者的requestCode相同也不会互相覆盖，结果分发前换回调用者的requestCode。
+ * 使用retain instance，屏幕旋转后进行中的请求仍然有效；旋转时不再强引用旧的Activity、Fragment，
+ * 结果返回时在新的Activity中重新查找{@code target}，见{@link TargetRef}。
+ * 第一次添加是异步的，添加完成前的请求在{@link #onCreate(Bundle)}时发出。
+ */
+public final class PermissionHostFragment extends Fragment {
+
+  static final String TAG = "pub.devrel.easypermissions.PermissionHostFragment";
+
+  // 自己分配的requestCode，不和调用者的requestCode比较，只要在进行中的请求里唯一
+  private static final int CODE_BASE = 0x7E000000;
+  private static final int CODE_MASK = 0x00FFFFFF;
+
+  // 值也用弱引用，Fragment会引用Activity
+  private static final Map<FragmentActivity, WeakReference<PermissionHostFragment>> HOSTS =
+      new WeakHashMap<>();
+
+  private final SparseArray<TargetRef> targets = new SparseArray<>();
+  private int lastCode;
+  // 添加完成前的请求
+  private List<Runnable> pending;
+
+  /**
+   * 得到{@code activity}的host，没有则添加。在主线程调用，可以在Fragment事务和生命周期回调中调用
+   *
+   * @throws IllegalStateException {@code activity}正在结束，还没有host，请求无法发出
+   */
+  static PermissionHostFragment get(FragmentActivity activity) {
+    WeakReference<PermissionHostFragment> ref = HOSTS.get(activity);
+    PermissionHostFragment host = ref == null ? null : ref.get();
+    if (host != null && (host.getActivity() == activity || !host.isAdded())) {
+      return host;
+    }
+
+    FragmentManager fm = activity.getSupportFragmentManager();
+    host = (PermissionHostFragment) fm.findFragmentByTag(TAG);
+    if (host == null) {
+      // Activity正在结束时不能再添加，请求会一直等不到结果，直接失败
+      if (activity.isFinishing()) {
+        throw new IllegalStateException(
+            "Cannot request permissions, activity " + activity + " is finishing.");
+      }
+      host = new PermissionHostFragment();
+      // 不立即执行事务，executePendingTransactions在事务和生命周期回调中会抛出异常
+      fm.beginTransaction().add(host, TAG).commitAllowingStateLoss();
+    }
+    HOSTS.put(activity, new WeakReference<>(host));
+    return host;
+  }
+
+  @Override public void onCreate(Bundle savedInstanceState) {
+    super.onCreate(savedInstanceState);
+    setRetainInstance(true);
+
+    List<Runnable> requests = pending;
+    pending = null;
+    if (requests != null) {
+      for (Runnable request : requests) {
+        request.run();
+      }
+    }
+  }
+
+  @Override public void onDetach() {
+    super.onDetach();
+    // Activity可能重建，不再强引用旧的Activity、Fragment
+    for (int i = 0; i < targets.size(); i++) {
+      targets.valueAt(i).release();
+    }
+  }
+
+  /**
+   * 添加完成后执行{@code request}，已经添加则立即执行
+   */
+  void whenAdded(Runnable request) {
+    if (isAdded()) {
+      request.run();
+      return;
+    }
+    if (pending == null) {
+      pending = new ArrayList<>();
+    }
+    pending.add(request);
+  }
+
+  /**
+   * 记录结果交给谁
+   *
+   * @param requestCode 调用者的requestCode
+   * @return 代替{@code requestCode}发出请求的requestCode
+   */
+  int putTarget(int requestCode, Object target) {
+    int code;
+    do {
+      lastCode = (lastCode + 1) & CODE_MASK;
+      code = CODE_BASE | lastCode;
+    } while (targets.indexOfKey(code) >= 0);
+    targets.put(code, new TargetRef(target, requestCode));
+    return code;
+  }
+
+  /**
+   * 取出并移除{@code code}对应的target，没有返回null
+   *
+   * @param code {@link #putTarget(int, Object)}返回的requestCode
+   */
+  TargetRef removeTarget(int code) {
+    TargetRef target = targets.get(code);
+    targets.remove(code);
+    return target;
+  }
+
+  /**
+   * 移除{@code target}的请求，用于取消请求
+   */
+  void removeTarget(Object target) {
+    for (int i = targets.size() - 1; i >= 0; i--) {
+      if (targets.valueAt(i).get() == target) {
+        targets.removeAt(i);
+      }
+    }
+  }
+  @Override public void onRequestPermissionsResult(int requestCode, String[] permissions,
+      int[] grantResults) {
+    super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+    EasyPermissions.onRequestPermissionsResult(requestCode, permissions, grantResults, this);
+  }
+
+  @Override public void onActivityResult(int requestCode, int resultCode, Intent data) {
+    super.onActivityResult(requestCode, resultCode, data);
+    EasyPermissions.onActivityResult(requestCode, resultCode, data, this);
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.os.Build;
+
+import java.util.Arrays;
+
+/**
+ * 构建时从合并后的AndroidManifest生成的权限表，见{@code easypermissions/permission-index.gradle}.
+ *
+ * 每个声明的权限记录保护级别、开始需要运行时申请的版本和Manifest中的maxSdkVersion，按权限名排序，
+ * 查找使用二分查找，不查询PackageManager。用于：
+ * 1. 确认是normal的权限和当前系统版本上不需要申请的dangerous权限直接认为已授权，不再询问系统；
+ *    无法确认保护级别的权限({@link #UNKNOWN})总是由系统检查；当前版本高于maxSdkVersion的权限没有声明，认为未授权
+ * 2. 以Manifest权限名传入的特殊权限(如{@code android.permission.SYSTEM_ALERT_WINDOW})按{@link SpecialPermission}处理
+ * 3. 请求Manifest中没有声明的权限时直接抛出异常，而不是被系统静默拒绝
+ *
+ * 脚本在应用的包中生成{@code GeneratedPermissionIndex}，通过{@link EasyPermissions#setPermissionIndex}设置：
+ * <pre>
+ * EasyPermissions.setPermissionIndex(GeneratedPermissionIndex.INDEX);
+ * </pre>
+ * 没有设置时以上检查都不进行。
+ */
+public final class PermissionIndex {
+
+  /** 安装时授予 */
+  public static final byte NORMAL = 0;
+  /** 从{@code minSdkVersion}开始需要运行时申请 */
+  public static final byte DANGEROUS = 1;
+  /** 需要打开设置页申请，见{@link SpecialPermission} */
+  public static final byte SPECIAL = 2;
+  /** 无法确认保护级别，如signature权限和脚本不认识的平台权限 */
+  public static final byte UNKNOWN = 3;
+
+  private static volatile PermissionIndex instance;
+
+  private final String[] names;
+  private final byte[] levels;
+  private final int[] minSdkVersions;
+  private final int[] maxSdkVersions;
+
+  /**
+   * 由生成的代码调用，数组不复制
+   *
+   * @param names 按{@link String#compareTo(String)}排序
+   * @param levels {@link #NORMAL}、{@link #DANGEROUS}、{@link #SPECIAL}或{@link #UNKNOWN}
+   * @param minSdkVersions 从这个版本开始需要运行时申请
+   * @param maxSdkVersions Manifest中的maxSdkVersion，没有为{@link Integer#MAX_VALUE}
+   * @throws IllegalArgumentException 数组长度不一致
+   */
+  public PermissionIndex(String[] names, byte[] levels, int[] minSdkVersions,
+      int[] maxSdkVersions) {
+    if (levels.length != names.length || minSdkVersions.length != names.length
+        || maxSdkVersions.length != names.length) {
+      throw new IllegalArgumentException("Arrays must have the same length");
+    }
+    this.names = names;
+    this.levels = levels;
+    this.minSdkVersions = minSdkVersions;
+    this.maxSdkVersions = maxSdkVersions;
+  }
+
+  static void set(PermissionIndex index) {
+    instance = index;
+  }
+
+  /**
+   * 当前系统上不需要申请，可以直接认为已授权：normal权限，或者当前版本低于dangerous权限的minSdkVersion.
+   * {@link #UNKNOWN}、{@link #SPECIAL}和{@link #isImplicitlyDenied(String)}的权限总是返回false
+   */
+  static boolean isImplicitlyGranted(String perm) {
+    PermissionIndex index = instance;
+    if (index == null) {
+      return false;
+    }
+
+    int i = index.indexOf(perm);
+    if (i < 0 || Build.VERSION.SDK_INT > index.maxSdkVersions[i]) {
+      return false;
+    }
+    switch (index.levels[i]) {
+      case NORMAL:
+        return true;
+      case DANGEROUS:
+        return Build.VERSION.SDK_INT < index.minSdkVersions[i];
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * 当前版本高于Manifest中的maxSdkVersion：应用在这个版本上没有声明这个权限，系统不会授予，直接认为未授权.
+   * 如{@code WRITE_EXTERNAL_STORAGE maxSdkVersion=18}在API 19以上；特殊权限由{@link SpecialPermission}检查
+   */
+  static boolean isImplicitlyDenied(String perm) {
+    PermissionIndex index = instance;
+    if (index == null) {
+      return false;
+    }
+
+    int i = index.indexOf(perm);
+    return i >= 0 && index.levels[i] != SPECIAL
+        && Build.VERSION.SDK_INT > index.maxSdkVersions[i];
+  }
+
+  /**
+   * {@code perm}是否是Manifest中声明的特殊权限
+   */
+  static boolean isSpecial(String perm) {
+    PermissionIndex index = instance;
+    if (index == null) {
+      return false;
+    }
+
+    int i = index.indexOf(perm);
+    return i >= 0 && index.levels[i] == SPECIAL;
+  }
+
+  /**
+   * 有权限表时检查{@code perm}是否在Manifest中声明；特殊权限检查它的{@link
+   * SpecialPermission#getManifestPermission()}，没有对应Manifest权限的不检查
+   *
+   * @throws IllegalArgumentException 没有声明
+   */
+  static void checkDeclared(String perm) {
+    PermissionIndex index = instance;
+    if (index == null) {
+      return;
+    }
+
+    String declared = perm;
+    SpecialPermission permission = SpecialPermission.get(perm);
+    if (permission != null) {
+      declared = permission.getManifestPermission();
+      if (declared == null) {
+        return;
+      }
+    }
+    if (index.indexOf(declared) < 0) {
+      throw new IllegalArgumentException(
+          "Permission is not declared in AndroidManifest.xml: " + declared);
+    }
+  }
+
+  int indexOf(String perm) {
+    return Arrays.binarySearch(names, perm);
+  }
+}
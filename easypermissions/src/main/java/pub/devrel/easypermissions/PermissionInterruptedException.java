@@ -0,0 +1,36 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+/**
+ * 请求被中断，没有得到结果：系统返回了空结果，或者rationale没有显示、没有得到回答就被关闭.
+ *
+ * 和调用者自己{@link PermissionFuture#cancel(boolean) 取消}请求不同，{@link PermissionFuture#get()}
+ * 以{@link java.util.concurrent.ExecutionException}包装抛出，{@link PermissionFuture#isCancelled()}为false。
+ */
+public final class PermissionInterruptedException extends Exception {
+
+  private final int requestCode;
+
+  public PermissionInterruptedException(int requestCode) {
+    super("Permission request " + requestCode + " was interrupted");
+    this.requestCode = requestCode;
+  }
+
+  public int getRequestCode() {
+    return requestCode;
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+/**
+ * 权限请求各阶段的统计回调，通过{@link EasyPermissions#setPermissionMetrics(PermissionMetrics)}设置.
+ *
+ * 回调在主线程同步执行，实现要足够轻；时间都是{@link System#nanoTime()}的差值，单位纳秒。
+ * 没有设置时不计时，也不产生任何分配。默认的实现见{@link InMemoryPermissionMetrics}。
+ */
+public interface PermissionMetrics {
+
+  /**
+   * 发起请求，在显示rationale之前
+   *
+   * @param perms 请求的权限，特殊权限为{@link android.provider.Settings}的action
+   */
+  void onPermissionsRequested(int requestCode, String[] perms);
+
+  /**
+   * rationale对话框关闭
+   *
+   * @param accepted 用户点了确定，继续请求
+   * @param durationNanos 对话框显示的时间
+   */
+  void onRationaleDismissed(int requestCode, boolean accepted, long durationNanos);
+
+  /**
+   * 收到结果，在回调宿主之前
+   *
+   * @param result 只在本次回调中有效，不要保存
+   * @param latencyNanos 从发起请求到收到结果，包括rationale的时间；无法得知时(如进程重建)为-1
+   */
+  void onPermissionsResult(PermissionResult result, long latencyNanos);
+
+  /**
+   * 执行完{@code target}中的{@link AfterPermissionGranted}方法
+   */
+  void onAnnotatedMethodsDispatched(Object target, int requestCode, long durationNanos);
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * {@link EasyPermissions#observe}的实现：在授权状态可能变化时重新检查，有变化时通知监听者.
+ *
+ * 收到权限结果(包括从设置页返回)和Activity回到前台时各触发一次检查，
+ * {@link #DEBOUNCE_MILLIS}内的多次触发合并为一次。检查时所有监听的权限组合并为一个bitset，
+ * 每个权限只向系统检查一次，不读取{@link PermissionStateCache}，缓存中只移除状态变化了的权限。
+ * 监听者保存在写时复制的数组中，只保存弱引用，
+ * 被回收的监听者在下一次检查时移除。
+ */
+final class PermissionObserver implements EasyPermissions.PermissionResultListener, Runnable {
+
+  static final long DEBOUNCE_MILLIS = 100;
+
+  private static final Observation[] EMPTY = {};
+
+  private static final PermissionObserver INSTANCE = new PermissionObserver();
+
+  private static final class Observation {
+
+    final WeakReference<EasyPermissions.PermissionChangeListener> listener;
+    final PermissionGroup group;
+    // 上次通知时已授权的权限，只在主线程修改
+    volatile long[] granted;
+
+    Observation(EasyPermissions.PermissionChangeListener listener, PermissionGroup group,
+        long[] granted) {
+      this.listener = new WeakReference<>(listener);
+      this.group = group;
+      this.granted = granted;
+    }
+  }
+
+  private volatile Observation[] observations = EMPTY;
+  private Context context;
+  private Handler handler;
+
+  private PermissionObserver() {
+  }
+
+  static void observe(Context context, PermissionGroup group,
+      EasyPermissions.PermissionChangeListener listener) {
+    INSTANCE.add(context, group, listener);
+  }
+
+  static void unobserve(EasyPermissions.PermissionChangeListener listener) {
+    INSTANCE.remove(listener);
+  }
+
+  private synchronized void add(Context context, PermissionGroup group,
+      EasyPermissions.PermissionChangeListener listener) {
+    if (this.context == null) {
+      Context app = context.getApplicationContext();
+      this.context = app != null ? app : context;
+      handler = new Handler(Looper.getMainLooper());
+      EasyPermissions.addPermissionResultListener(this);
+      if (this.context instanceof Application
+          && Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+        ((Application) this.context).registerActivityLifecycleCallbacks(new Lifecycle());
+      }
+    }
+
+    long[] granted = PermissionGroup.andNot(group.bits(),
+        PermissionGroup.missingBits(this.context, group.bits()));
+    Observation[] current = observations;
+    Observation[] added = new Observation[current.length + 1];
+    System.arraycopy(current, 0, added, 0, current.length);
+    added[current.length] = new Observation(listener, group, granted);
+    observations = added;
+  }
+
+  /**
+   * 移除{@code listener}和已经被回收的监听者
+   */
+  private synchronized void remove(EasyPermissions.PermissionChangeListener listener) {
+    Observation[] current = observations;
+    int kept = 0;
+    Observation[] remaining = new Observation[current.length];
+    for (Observation observation : current) {
+      EasyPermissions.PermissionChangeListener l = observation.listener.get();
+      if (l != null && l != listener) {
+        remaining[kept++] = observation;
+      }
+    }
+    if (kept < current.length) {
+      Observation[] trimmed = new Observation[kept];
+      System.arraycopy(remaining, 0, trimmed, 0, kept);
+      observations = kept == 0 ? EMPTY : trimmed;
+    }
+  }
+
+  @Override public void onPermissionsResult(PermissionResult result) {
+    schedule();
+  }
+
+  /**
+   * 延迟{@link #DEBOUNCE_MILLIS}检查，期间再次触发时重新计时
+   */
+  private void schedule() {
+    if (observations.length == 0) {
+      return;
+    }
+    handler.removeCallbacks(this);
+    handler.postDelayed(this, DEBOUNCE_MILLIS);
+  }
+
+  @Override public void run() {
+    Observation[] current = observations;
+    if (current.length == 0) {
+      return;
+    }
+
+    long[] bits = current[0].group.bits();
+    for (int i = 1; i < current.length; i++) {
+      bits = PermissionGroup.or(bits, current[i].group.bits());
+    }
+    // 在后台时权限可能在设置中被修改，不读取缓存重新检查监听的权限，只移除变化了的缓存；
+    // 检查后端自己的快照(如PackageInfoPermissionChecker)需要重新查询
+    EasyPermissions.permissionChecker.invalidate();
+    long[] missing = PermissionGroup.recheckMissingBits(context, bits);
+
+    boolean cleared = false;
+    for (Observation observation : current) {
+      EasyPermissions.PermissionChangeListener listener = observation.listener.get();
+      if (listener == null) {
+        cleared = true;
+        continue;
+      }
+
+      long[] previous = observation.granted;
+      long[] granted = PermissionGroup.andNot(observation.group.bits(), missing);
+      if (!Arrays.equals(granted, previous)) {
+        observation.granted = granted;
+        listener.onPermissionsChanged(
+            PermissionGroup.ofBits(PermissionGroup.andNot(granted, previous)),
+            PermissionGroup.ofBits(PermissionGroup.andNot(previous, granted)));
+      }
+    }
+    if (cleared) {
+      remove(null);
+    }
+  }
+
+  private final class Lifecycle implements Application.ActivityLifecycleCallbacks {
+
+    @Override public void onActivityResumed(Activity activity) {
+      schedule();
+    }
+
+    @Override public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override public void onActivityStarted(Activity activity) {
+    }
+
+    @Override public void onActivityPaused(Activity activity) {
+    }
+
+    @Override public void onActivityStopped(Activity activity) {
+    }
+
+    @Override public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override public void onActivityDestroyed(Activity activity) {
+    }
+  }
+}
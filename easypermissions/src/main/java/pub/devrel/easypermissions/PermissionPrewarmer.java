@@ -0,0 +1,97 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+import android.content.DialogInterface;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Process;
+import android.support.v7.app.AlertDialog;
+import android.util.Log;
+
+/**
+ * 在后台线程完成第一次权限交互需要的准备工作，见{@link EasyPermissions#prewarm}.
+ *
+ * 1. 解析宿主类的{@link AfterPermissionGranted}方法表
+ * 2. 加载并初始化rationale对话框和结果相关的类
+ * 3. 检查一次Manifest中声明的所有权限(包括特殊权限)，打开{@link PermissionStateCache}时结果会被缓存
+ */
+final class PermissionPrewarmer implements Runnable {
+
+  private static final String TAG = "EasyPermissions";
+
+  private static final Class<?>[] CLASSES = {
+      AlertDialog.class, AlertDialog.Builder.class, DialogInterface.OnClickListener.class,
+      DialogRationalePresenter.class, SpecialPermission.class,
+      PermissionSnapshot.class, PermissionResult.class, RequestCodeMultiplexer.class
+  };
+
+  private final Context context;
+  private final Class<?>[] hostClasses;
+
+  PermissionPrewarmer(Context context, Class<?>[] hostClasses) {
+    this.context = context;
+    this.hostClasses = hostClasses;
+  }
+
+  @Override public void run() {
+    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+    prewarm();
+  }
+
+  /**
+   * 在当前线程执行
+   */
+  void prewarm() {
+    for (Class<?> hostClass : hostClasses) {
+      AnnotatedMethodCache.resolve(hostClass);
+    }
+
+    for (Class<?> clazz : CLASSES) {
+      try {
+        Class.forName(clazz.getName(), true, clazz.getClassLoader());
+      } catch (ClassNotFoundException | LinkageError e) {
+        Log.w(TAG, "prewarm: cannot initialize " + clazz.getName(), e);
+      }
+    }
+
+    String[] perms = getRequestedPermissions(context);
+    for (int i = 0; i < perms.length; i++) {
+      // 特殊权限以设置页的action表示
+      SpecialPermission permission = SpecialPermission.forManifestPermission(perms[i]);
+      if (permission != null) {
+        perms[i] = permission.getName();
+      }
+    }
+    if (perms.length > 0) {
+      PermissionSnapshot.take(context, perms);
+    }
+  }
+
+  private static String[] getRequestedPermissions(Context context) {
+    try {
+      PackageInfo info = context.getPackageManager()
+          .getPackageInfo(context.getPackageName(), PackageManager.GET_PERMISSIONS);
+      if (info.requestedPermissions != null) {
+        return info.requestedPermissions.clone();
+      }
+    } catch (PackageManager.NameNotFoundException e) {
+      Log.w(TAG, "prewarm: package not found", e);
+    }
+    return new String[0];
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 以{@link PermissionFuture}返回结果的权限请求，适合在后台任务中等待授权.
+ *
+ * <pre>
+ * PermissionFuture future = PermissionRequest.with(activity)
+ *     .permissions(Manifest.permission.WRITE_EXTERNAL_STORAGE)
+ *     .rationale(getString(R.string.rationale))
+ *     .timeout(30, TimeUnit.SECONDS)
+ *     .execute();
+ * </pre>
+ *
+ * 请求通过{@link PermissionHostFragment}发出，宿主不需要转发结果。
+ */
+public final class PermissionRequest {
+
+  // 没有指定requestCode时自动分配，避免和调用者自己的requestCode重复
+  private static final AtomicInteger NEXT_REQUEST_CODE = new AtomicInteger(0x40000000);
+
+  private static Handler mainHandler;
+
+  private final Context context;
+  private final String[] perms;
+  private final String rationale;
+  private final int requestCode;
+  private final long timeoutMillis;
+
+  private PermissionRequest(Builder builder) {
+    this.context = builder.context;
+    this.perms = builder.perms;
+    this.rationale = builder.rationale;
+    this.requestCode = builder.requestCode;
+    this.timeoutMillis = builder.timeoutMillis;
+  }
+
+  /**
+   * @param context 属于某个FragmentActivity的Context
+   */
+  public static Builder with(Context context) {
+    return new Builder(context);
+  }
+
+  public String[] getPermissions() {
+    return perms.clone();
+  }
+
+  public int getRequestCode() {
+    return requestCode;
+  }
+
+  /**
+   * 发起请求，可以在任意线程调用，请求本身总是在主线程发出
+   */
+  public PermissionFuture execute() {
+    final PermissionFuture future = new PermissionFuture(requestCode);
+    runOnMainThread(new Runnable() {
+      @Override public void run() {
+        if (future.isDone()) {// 已经被取消
+          return;
+        }
+        final PermissionHostFragment host;
+        try {
+          host = PermissionHostFragment.get(EasyPermissions.getFragmentActivity(context));
+        } catch (IllegalStateException e) {// Activity正在结束
+          future.fail(e);
+          return;
+        }
+        future.attach(host, timeoutMillis);
+        host.whenAdded(new Runnable() {
+          @Override public void run() {
+            if (!future.isDone()) {
+              EasyPermissions.requestPermissions(host, rationale,
+                  host.putTarget(requestCode, future.receiver()), perms);
+            }
+          }
+        });
+      }
+    });
+    return future;
+  }
+
+  static void runOnMainThread(Runnable runnable) {
+    if (Looper.myLooper() == Looper.getMainLooper()) {
+      runnable.run();
+    } else {
+      mainHandler().post(runnable);
+    }
+  }
+
+  static synchronized Handler mainHandler() {
+    if (mainHandler == null) {
+      mainHandler = new Handler(Looper.getMainLooper());
+    }
+    return mainHandler;
+  }
+
+  public static final class Builder {
+
+    private final Context context;
+    private String[] perms = {};
+    private String rationale = "";
+    private int requestCode = NEXT_REQUEST_CODE.getAndIncrement();
+    private long timeoutMillis;
+
+    private Builder(Context context) {
+      if (context == null) {
+        throw new IllegalArgumentException("context == null");
+      }
+      this.context = context;
+    }
+
+    public Builder permissions(String... perms) {
+      this.perms = perms.clone();
+      return this;
+    }
+
+    /**
+     * 系统要求显示说明时的提示语
+     */
+    public Builder rationale(String rationale) {
+      this.rationale = rationale;
+      return this;
+    }
+
+    /**
+     * 指定requestCode，{@link AfterPermissionGranted}方法需要匹配时使用，默认自动分配
+     */
+    public Builder requestCode(int requestCode) {
+      this.requestCode = requestCode;
+      return this;
+    }
+
+    /**
+     * 超时后请求以{@link java.util.concurrent.TimeoutException}结束，默认不超时
+     */
+    public Builder timeout(long timeout, TimeUnit unit) {
+      this.timeoutMillis = unit.toMillis(timeout);
+      return this;
+    }
+
+    public PermissionRequest build() {
+      if (perms.length == 0) {
+        throw new IllegalStateException("No permissions to request.");
+      }
+      return new PermissionRequest(this);
+    }
+
+    public PermissionFuture execute() {
+      return build().execute();
+    }
+  }
+
+  /**
+   * 一次请求的不可变结果
+   */
+  public static final class Result {
+
+    private final int requestCode;
+    private final List<String> granted;
+    private final List<String> denied;
+
+    Result(int requestCode, String[] granted, String[] denied) {
+      this.requestCode = requestCode;
+      this.granted = Collections.unmodifiableList(Arrays.asList(granted));
+      this.denied = Collections.unmodifiableList(Arrays.asList(denied));
+    }
+
+    static Result of(PermissionResult result) {
+      String[] granted = new String[result.getGrantedCount()];
+      for (int i = 0; i < granted.length; i++) {
+        granted[i] = result.getGranted(i);
+      }
+      String[] denied = new String[result.getDeniedCount()];
+      for (int i = 0; i < denied.length; i++) {
+        denied[i] = result.getDenied(i);
+      }
+      return new Result(result.getRequestCode(), granted, denied);
+    }
+
+    public int getRequestCode() {
+      return requestCode;
+    }
+
+    public List<String> getGranted() {
+      return granted;
+    }
+
+    public List<String> getDenied() {
+      return denied;
+    }
+
+    public boolean isAllGranted() {
+      return !granted.isEmpty() && denied.isEmpty();
+    }
+
+    @Override public String toString() {
+      return "Result{requestCode=" + requestCode + ", granted=" + granted + ", denied=" + denied
+          + '}';
+    }
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.app.Activity;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 合并同一Activity在一次主线程消息循环内发起的权限请求，默认关闭.
+ *
+ * 多个Fragment同时请求权限时，系统一次只显示一个对话框，其余的会被丢弃或依次弹出。
+ * 开启后，同一轮内的请求去重合并为一次系统请求，结果再按各自原来的requestCode分发给每个请求者的
+ * {@link EasyPermissions.PermissionCallbacks}和{@link AfterPermissionGranted}方法。
+ *
+ * 合并后的请求由第一个请求者发出，所以它必须把结果转发给
+ * {@link EasyPermissions#onRequestPermissionsResult(int, String[], int[], Object)}。
+ * 进行中的请求按系统requestCode记录，只弱引用请求者；Activity重建后结果到达时，
+ * 请求者重新绑定为新的Activity，或新Activity中tag/id相同的Fragment，找不到的请求者不再回调。
+ * 进程被杀后只有第一个请求者的请求随requestCode保存，结果到达时按普通请求分发给重建后的它，其他请求者不再回调。
+ * 只在主线程使用。
+ */
+public final class PermissionRequestScheduler {
+
+  /** 合并后的系统请求在{@link RequestCodeMultiplexer}中的tag */
+  static final String BATCH_TAG = "PermissionRequestScheduler";
+
+  private static final PermissionRequestScheduler INSTANCE = new PermissionRequestScheduler();
+
+  // 只保留到下一次消息循环
+  private final Map<Activity, Batch> pending = new HashMap<>();
+  // 按系统requestCode，RequestCodeMultiplexer重用同一个requestCode时覆盖，数量有上限
+  private final SparseArray<Batch> inFlight = new SparseArray<>();
+  private Handler handler;
+  private boolean enabled;
+
+  private PermissionRequestScheduler() {
+  }
+
+  public static PermissionRequestScheduler getInstance() {
+    return INSTANCE;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * 把请求加入当前这一轮，下一次消息循环时发出
+   *
+   * @return false 没有开启合并，需要直接请求
+   */
+  boolean enqueue(Object object, Activity activity, String[] perms, String[] allPerms,
+      long[] rationaleMask, int requestCode, long startNanos) {
+    if (!enabled || activity == null) {
+      return false;
+    }
+
+    Batch batch = pending.get(activity);
+    if (batch == null) {
+      batch = new Batch();
+      pending.put(activity, batch);
+      handler().post(batch);
+    }
+    batch.entries.add(new Entry(object, perms, allPerms, rationaleMask, requestCode, startNanos));
+    return true;
+  }
+
+  /**
+   * 合并请求的结果，按原来的请求分发
+   *
+   * @param requestCode 合并请求的系统requestCode
+   * @param headRequestCode 第一个请求者的requestCode，分配时保存，进程重建后仍然可用
+   * @param headPerms 第一个请求者实际请求的权限
+   * @param headRationaleMask 第一个请求者请求前的rationale状态
+   * @param object 收到结果的宿主，即发出合并请求的请求者，Activity重建后是新的实例
+   */
+  void onBatchResult(int requestCode, int headRequestCode, String[] headPerms,
+      long[] headRationaleMask, String[] permissions, int[] grantResults, Object object) {
+    Batch batch = inFlight.get(requestCode);
+    if (batch == null) {
+      // 进程重建过，其他请求者不在了；object是重建后的第一个请求者，按它自己的请求分发
+      if (headPerms != null) {
+        dispatch(headRequestCode, headPerms, null, headRationaleMask, 0, permissions,
+            grantResults, object);
+      }
+      return;
+    }
+    inFlight.remove(requestCode);
+
+    Activity activity = EasyPermissions.getActivity(object);
+    for (int n = 0; n < batch.entries.size(); n++) {
+      Entry entry = batch.entries.get(n);
+      Object target = n == 0 ? object : entry.target.resolve(activity);
+      if (target != null) {
+        dispatch(entry.target.requestCode, entry.perms, entry.allPerms, entry.rationaleMask,
+            entry.startNanos, permissions, grantResults, target);
+      }
+    }
+  }
+
+  /**
+   * 从合并请求的结果中取出一个请求者的结果并分发
+   */
+  private static void dispatch(int requestCode, String[] entryPerms, String[] allPerms,
+      long[] rationaleMask, long startNanos, String[] permissions, int[] grantResults,
+      Object target) {
+    if (permissions.length == 0) {// 请求被中断，和系统一样返回空结果
+      EasyPermissions.dispatchPermissionsResult(requestCode, permissions, grantResults, target,
+          startNanos, null);
+      return;
+    }
+
+    int[] requested = new int[entryPerms.length];
+    for (int i = 0; i < requested.length; i++) {
+      requested[i] = resultOf(entryPerms[i], permissions, grantResults,
+          PackageManager.PERMISSION_DENIED);
+    }
+    String[] permanentlyDenied = EasyPermissions.findPermanentlyDenied(target, entryPerms,
+        requested, rationaleMask);
+
+    // 只请求了未授权的部分时，其余权限本来就是授权的
+    String[] perms = entryPerms;
+    int[] results = requested;
+    if (allPerms != null) {
+      perms = allPerms;
+      results = new int[perms.length];
+      for (int i = 0; i < perms.length; i++) {
+        results[i] = resultOf(perms[i], entryPerms, requested,
+            PackageManager.PERMISSION_GRANTED);
+      }
+    }
+    EasyPermissions.dispatchOrRequestSpecial(requestCode, perms, results, target, startNanos,
+        permanentlyDenied);
+  }
+
+  /**
+   * @param missing {@code perm}不在结果中时的值
+   */
+  static int resultOf(String perm, String[] permissions, int[] grantResults, int missing) {
+    for (int i = 0; i < permissions.length; i++) {
+      if (permissions[i].equals(perm)) {
+        return grantResults[i];
+      }
+    }
+    return missing;
+  }
+
+  private Handler handler() {
+    if (handler == null) {
+      handler = new Handler(Looper.getMainLooper());
+    }
+    return handler;
+  }
+
+  private final class Batch implements Runnable {
+
+    final List<Entry> entries = new ArrayList<>();
+
+    @Override public void run() {
+      pending.values().remove(this);
+
+      if (entries.size() == 1) {
+        Entry entry = entries.get(0);
+        EasyPermissions.executePermissionsRequestNow(entry.take(), entry.perms,
+            RequestCodeMultiplexer.PERMISSIONS.allocate(entry.target.requestCode, entry.allPerms,
+                entry.rationaleMask, entry.startNanos));
+        return;
+      }
+
+      Set<String> union = new LinkedHashSet<>();
+      for (Entry entry : entries) {
+        for (String perm : entry.perms) {
+          union.add(perm);
+        }
+      }
+
+      Object first = entries.get(0).take();
+      for (Entry entry : entries) {
+        entry.take();
+      }
+      // 保存第一个请求者的请求，进程重建后结果只能交给它
+      Entry head = entries.get(0);
+      int requestCode = RequestCodeMultiplexer.PERMISSIONS.allocate(BATCH_TAG,
+          head.target.requestCode, head.perms, head.rationaleMask, 0);
+      inFlight.put(requestCode, this);
+      EasyPermissions.executePermissionsRequestNow(first,
+          union.toArray(new String[union.size()]), requestCode);
+    }
+  }
+
+  private static final class Entry {
+
+    final TargetRef target;
+    final String[] perms;
+    final String[] allPerms;
+    final long[] rationaleMask;
+    final long startNanos;
+
+    Entry(Object object, String[] perms, String[] allPerms, long[] rationaleMask, int requestCode,
+        long startNanos) {
+      this.target = new TargetRef(object, requestCode);
+      this.perms = perms;
+      this.allPerms = allPerms;
+      this.rationaleMask = rationaleMask;
+      this.startNanos = startNanos;
+    }
+
+    /**
+     * 发出请求，之后不再强引用请求者
+     */
+    Object take() {
+      Object object = target.get();
+      target.release();
+      return object;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.content.pm.PackageManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次权限请求结果的视图，按已授权、未授权分组，不复制权限数组.
+ *
+ * 实例来自对象池，只在{@link EasyPermissions.PermissionResultCallbacks#onPermissionsResult(PermissionResult)}
+ * 调用期间有效，回调返回后会被回收复用，不要保存引用。
+ */
+public final class PermissionResult {
+
+  private static final int MAX_POOL_SIZE = 4;
+  private static final Object POOL_LOCK = new Object();
+  private static PermissionResult pool;
+  private static int poolSize;
+
+  private PermissionResult next;
+
+  private int requestCode;
+  private String[] permissions;
+  // 先是已授权权限的下标，再是未授权的，各自保持原顺序
+  private int[] indices = new int[8];
+  private int size;
+  private int grantedCount;
+
+  private PermissionResult() {
+  }
+
+  /**
+   * 从对象池取出一个实例，并按{@code grantResults}分组
+   *
+   * @param grantResults 可以比{@code permissions}长，只使用前{@code permissions.length}个
+   */
+  static PermissionResult obtain(int requestCode, String[] permissions, int[] grantResults) {
+    PermissionResult result = obtain(requestCode, permissions);
+    int[] indices = result.indices;
+    int n = 0;
+    for (int i = 0; i < result.size; i++) {
+      if (grantResults[i] == PackageManager.PERMISSION_GRANTED) {
+        indices[n++] = i;
+      }
+    }
+    result.grantedCount = n;
+    for (int i = 0; i < result.size; i++) {
+      if (grantResults[i] != PackageManager.PERMISSION_GRANTED) {
+        indices[n++] = i;
+      }
+    }
+    return result;
+  }
+
+  private static PermissionResult obtain(int requestCode, String[] permissions) {
+    PermissionResult result;
+    synchronized (POOL_LOCK) {
+      result = pool;
+      if (result != null) {
+        pool = result.next;
+        result.next = null;
+        poolSize--;
+      }
+    }
+    if (result == null) {
+      result = new PermissionResult();
+    }
+
+    result.requestCode = requestCode;
+    result.permissions = permissions;
+    result.size = permissions.length;
+    if (result.indices.length < result.size) {
+      result.indices = new int[Math.max(result.size, result.indices.length * 2)];
+    }
+    return result;
+  }
+
+  /**
+   * 回调结束后放回对象池
+   */
+  void recycle() {
+    permissions = null;
+    size = 0;
+    grantedCount = 0;
+    synchronized (POOL_LOCK) {
+      if (poolSize < MAX_POOL_SIZE) {
+        next = pool;
+        pool = this;
+        poolSize++;
+      }
+    }
+  }
+
+  public int getRequestCode() {
+    return requestCode;
+  }
+
+  /**
+   * 由{@link PermissionHostFragment}发出的请求，分发前换回调用者的requestCode
+   */
+  void setRequestCode(int requestCode) {
+    this.requestCode = requestCode;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getGrantedCount() {
+    return grantedCount;
+  }
+
+  public int getDeniedCount() {
+    return size - grantedCount;
+  }
+
+  public boolean isAllGranted() {
+    return size > 0 && grantedCount == size;
+  }
+
+  /**
+   * 第{@code index}个已授权的权限，{@code 0 <= index < getGrantedCount()}
+   */
+  public String getGranted(int index) {
+    if (index < 0 || index >= grantedCount) {
+      throw new IndexOutOfBoundsException("index=" + index + ", granted=" + grantedCount);
+    }
+    return permissions[indices[index]];
+  }
+
+  /**
+   * 第{@code index}个未授权的权限，{@code 0 <= index < getDeniedCount()}
+   */
+  public String getDenied(int index) {
+    if (index < 0 || index >= size - grantedCount) {
+      throw new IndexOutOfBoundsException("index=" + index + ", denied=" + (size - grantedCount));
+    }
+    return permissions[indices[grantedCount + index]];
+  }
+
+  /**
+   * 复制已授权的权限，会分配新的List
+   */
+  public List<String> copyGranted() {
+    List<String> granted = new ArrayList<>(grantedCount);
+    for (int i = 0; i < grantedCount; i++) {
+      granted.add(permissions[indices[i]]);
+    }
+    return granted;
+  }
+
+  /**
+   * 复制未授权的权限，会分配新的List
+   */
+  public List<String> copyDenied() {
+    List<String> denied = new ArrayList<>(size - grantedCount);
+    for (int i = grantedCount; i < size; i++) {
+      denied.add(permissions[indices[i]]);
+    }
+    return denied;
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+
+/**
+ * 一次性检查一组权限的授权状态，每个权限只检查一次.
+ *
+ * 结果以bitset保存，第i位对应输入数组的第i个权限，分为已授权、未授权和特殊权限三组。
+ * 特殊权限({@link SpecialPermission})使用各自的{@link SpecialPermission#isGranted(Context)}检查。
+ * 开启{@link PermissionStateCache}后，已授权的运行时权限直接从缓存读取；
+ * 设置了{@link PermissionIndex}时，normal权限、当前版本不需要申请的权限和高于maxSdkVersion的权限不询问系统。
+ */
+public final class PermissionSnapshot {
+
+  private static final String[] EMPTY = {};
+
+  private final String[] permissions;
+  private final long[] granted;
+  private final long[] special;
+  private final int grantedCount;
+
+  private PermissionSnapshot(String[] permissions, long[] granted, long[] special,
+      int grantedCount) {
+    this.permissions = permissions;
+    this.granted = granted;
+    this.special = special;
+    this.grantedCount = grantedCount;
+  }
+
+  /**
+   * 检查{@code perms}中每个权限的状态
+   *
+   * @param context the calling context.
+   * @param perms one ore more permissions, such as {@code android.Manifest.permission.CAMERA}.
+   */
+  public static PermissionSnapshot take(Context context, String... perms) {
+    int words = (perms.length + 63) >>> 6;
+    long[] granted = new long[words];
+    long[] special = new long[words];
+    int grantedCount = 0;
+
+    for (int i = 0; i < perms.length; i++) {
+      String perm = perms[i];
+      SpecialPermission specialPermission = SpecialPermission.get(perm);
+      if (specialPermission != null) {
+        special[i >>> 6] |= 1L << i;
+      }
+
+      if (check(context, perm, specialPermission, true)) {
+        granted[i >>> 6] |= 1L << i;
+        grantedCount++;
+      }
+    }
+
+    return new PermissionSnapshot(perms, granted, special, grantedCount);
+  }
+
+  /**
+   * 检查单个权限，和{@link #take(Context, String...)}的规则相同
+   */
+  public static boolean isGranted(Context context, String perm) {
+    return check(context, perm, SpecialPermission.get(perm), true);
+  }
+
+  /**
+   * 不读取{@link PermissionStateCache}，重新询问系统；已授权时仍然写入缓存
+   */
+  static boolean recheck(Context context, String perm) {
+    return check(context, perm, SpecialPermission.get(perm), false);
+  }
+
+  /**
+   * 是否是需要开启Activity申请的特殊权限
+   */
+  public static boolean isSpecialPermission(String perm) {
+    return SpecialPermission.get(perm) != null;
+  }
+
+  private static boolean check(Context context, String perm,
+      SpecialPermission specialPermission, boolean useCache) {
+    if (specialPermission == null && PermissionIndex.isImplicitlyGranted(perm)) {
+      return true;
+    }
+    if (specialPermission == null && PermissionIndex.isImplicitlyDenied(perm)) {
+      return false;
+    }
+
+    // 特殊权限可以在设置中随时关闭，不缓存
+    if (specialPermission != null) {
+      return specialPermission.isGranted(context);
+    }
+
+    PermissionStateCache cache = PermissionStateCache.getInstance();
+    if (useCache && cache.isGranted(perm)) {
+      return true;
+    }
+
+    int generation = cache.generation();
+    boolean granted = hasDangerousPermission(context, perm);
+    if (granted) {
+      cache.putGranted(perm, generation);
+    }
+    return granted;
+  }
+
+  private static boolean hasDangerousPermission(Context context, String perm) {
+    return EasyPermissions.permissionChecker.isGranted(context, perm);
+  }
+
+  public int size() {
+    return permissions.length;
+  }
+
+  public String getPermission(int index) {
+    return permissions[index];
+  }
+
+  public boolean isGranted(int index) {
+    return (granted[index >>> 6] & (1L << index)) != 0;
+  }
+
+  public boolean isSpecial(int index) {
+    return (special[index >>> 6] & (1L << index)) != 0;
+  }
+
+  public boolean isAllGranted() {
+    return grantedCount == permissions.length;
+  }
+
+  public int getGrantedCount() {
+    return grantedCount;
+  }
+
+  public int getDeniedCount() {
+    return permissions.length - grantedCount;
+  }
+
+  /**
+   * 已授权权限的bitset，第i位对应第i个权限
+   */
+  public long[] getGrantedBits() {
+    return granted.clone();
+  }
+
+  /**
+   * 未授权权限的bitset
+   */
+  public long[] getDeniedBits() {
+    long[] denied = new long[granted.length];
+    for (int i = 0; i < denied.length; i++) {
+      denied[i] = ~granted[i] & validBits(i);
+    }
+    return denied;
+  }
+
+  /**
+   * 特殊权限的bitset
+   */
+  public long[] getSpecialBits() {
+    return special.clone();
+  }
+
+  /**
+   * 所有未授权的权限，顺序和输入相同
+   */
+  public String[] getDenied() {
+    return collectDenied(true, true);
+  }
+
+  /**
+   * 和系统回调相同格式的结果，每个权限为{@link PackageManager#PERMISSION_GRANTED}或
+   * {@link PackageManager#PERMISSION_DENIED}
+   */
+  int[] toGrantResults() {
+    int[] results = new int[permissions.length];
+    for (int i = 0; i < results.length; i++) {
+      results[i] = isGranted(i) ? PackageManager.PERMISSION_GRANTED
+          : PackageManager.PERMISSION_DENIED;
+    }
+    return results;
+  }
+
+  /**
+   * 未授权的运行时(dangerous)权限，可以直接通过系统申请
+   */
+  public String[] getDeniedDangerous() {
+    return collectDenied(true, false);
+  }
+
+  /**
+   * 未授权的特殊权限，需要通过{@link EasyPermissions#requestSpecialPermission(Object, String)}申请
+   */
+  public String[] getDeniedSpecial() {
+    return collectDenied(false, true);
+  }
+
+  private String[] collectDenied(boolean dangerous, boolean special) {
+    int count = 0;
+    for (int i = 0; i < permissions.length; i++) {
+      if (isDenied(i, dangerous, special)) {
+        count++;
+      }
+    }
+    if (count == 0) {
+      return EMPTY;
+    }
+
+    String[] result = new String[count];
+    int n = 0;
+    for (int i = 0; i < permissions.length; i++) {
+      if (isDenied(i, dangerous, special)) {
+        result[n++] = permissions[i];
+      }
+    }
+    return result;
+  }
+
+  private boolean isDenied(int index, boolean dangerous, boolean special) {
+    return !isGranted(index) && (isSpecial(index) ? special : dangerous);
+  }
+
+  private long validBits(int word) {
+    int remaining = permissions.length - (word << 6);
+    return remaining >= 64 ? -1L : (1L << remaining) - 1;
+  }
+}
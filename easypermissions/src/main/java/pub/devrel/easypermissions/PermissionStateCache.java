@@ -0,0 +1,208 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 进程内的权限授权缓存，默认关闭，通过{@link #setEnabled(boolean)}开启.
+ *
+ * 只缓存已授权的权限：运行时权限被收回时进程会被系统杀死，所以已授权的结果在进程内一直有效。
+ * 缓存在{@link EasyPermissions#onRequestPermissionsResult(int, String[], int[], Object)}
+ * 和{@link EasyPermissions#onActivityResult(int, int, android.content.Intent, Object)}中清空；
+ * 特殊权限可以在设置中随时关闭，不缓存。
+ * 清空前开始的检查不会把旧的结果写回缓存：写入时比较开始检查时的{@link #generation()}，
+ * 写入后才发现清空过时只撤销自己写入的值，不影响之后的检查写入的结果。
+ *
+ * 查询不分配对象，命中/未命中次数可以通过{@link #getHitCount()}、{@link #getMissCount()}查看。
+ */
+public final class PermissionStateCache {
+
+  private static final long[] NO_IDS = {};
+
+  private static final PermissionStateCache INSTANCE = new PermissionStateCache();
+
+  // 值是写入时的代数，撤销时只移除自己写入的
+  private final ConcurrentHashMap<String, Integer> granted = new ConcurrentHashMap<>();
+  // 已授权权限的PermissionGroup id，代数不是当前代数时无效
+  private final AtomicReference<GrantedIds> grantedIds =
+      new AtomicReference<>(new GrantedIds(0, NO_IDS));
+  // 每次清空加一
+  private final AtomicInteger generation = new AtomicInteger();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private volatile boolean enabled;
+
+  private PermissionStateCache() {
+  }
+
+  public static PermissionStateCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * 开启或关闭缓存，关闭时清空已缓存的权限
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) {
+      invalidate();
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * 清空缓存，下次检查重新询问系统。从设置页返回时(如{@code onResume})调用
+   */
+  public void invalidate() {
+    generation.incrementAndGet();
+    granted.clear();
+  }
+
+  /**
+   * 只移除{@code perm}，没有缓存时什么也不做. 移除时同样使正在进行的检查不写回缓存
+   *
+   * @param id {@code perm}的{@link PermissionGroup} id
+   */
+  void invalidate(String perm, int id) {
+    if (!granted.containsKey(perm) && !Bits.isSet(getGrantedIds(), id)) {
+      return;
+    }
+    int newGeneration = generation.incrementAndGet();
+    granted.remove(perm);
+    // 其他id仍然有效，移除id后带到新的代数
+    GrantedIds current;
+    long[] ids;
+    do {
+      current = grantedIds.get();
+      if (current.generation != newGeneration - 1) {// 已经无效，或者之后的检查已经写入
+        return;
+      }
+      ids = current.ids.clone();
+      if (Bits.isSet(ids, id)) {
+        ids[id >>> 6] &= ~(1L << id);
+      }
+    } while (!grantedIds.compareAndSet(current, new GrantedIds(newGeneration, ids)));
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public void resetStats() {
+    hits.set(0);
+    misses.set(0);
+  }
+
+  /**
+   * 缓存中是否记录了{@code perm}已授权，开启时统计命中次数
+   */
+  boolean isGranted(String perm) {
+    if (!enabled) {
+      return false;
+    }
+
+    if (granted.containsKey(perm)) {
+      hits.incrementAndGet();
+      return true;
+    }
+    misses.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * 当前的代数，在检查权限之前读取，写入时传给{@link #putGranted(String, int)}
+   */
+  int generation() {
+    return generation.get();
+  }
+
+  /**
+   * 记录{@code perm}已授权. 检查期间缓存被清空过则不写入
+   */
+  void putGranted(String perm, int generation) {
+    if (!enabled || generation != this.generation.get()) {
+      return;
+    }
+    // 不覆盖之后的检查写入的值，撤销时才不会移除它
+    Integer written = generation;
+    Integer old;
+    do {
+      old = granted.get(perm);
+      if (old != null && old >= generation) {
+        return;
+      }
+    } while (old == null ? granted.putIfAbsent(perm, written) != null
+        : !granted.replace(perm, old, written));
+    // 比较和写入之间清空过，撤销自己的写入
+    if (generation != this.generation.get()) {
+      granted.remove(perm, written);
+    }
+  }
+
+  /**
+   * 已授权权限的{@link PermissionGroup} id bitset，关闭时为空；不要修改返回的数组
+   */
+  long[] getGrantedIds() {
+    GrantedIds current = grantedIds.get();
+    return enabled && current.generation == generation.get() ? current.ids : NO_IDS;
+  }
+
+  /**
+   * 记录{@code ids}中的权限已授权，同{@link #putGranted(String, int)}
+   *
+   * @param ids 没有为null
+   */
+  void putGrantedIds(long[] ids, int generation) {
+    if (!enabled || ids == null) {
+      return;
+    }
+    // 写入的代数是检查开始时的，比较和写入之间清空过也不会被读到，不需要撤销
+    GrantedIds current;
+    do {
+      if (generation != this.generation.get()) {
+        return;
+      }
+      current = grantedIds.get();
+      if (current.generation > generation) {// 之后的检查已经写入
+        return;
+      }
+      // 旧代数的id已经无效，不合并
+    } while (!grantedIds.compareAndSet(current, new GrantedIds(generation,
+        current.generation == generation ? PermissionGroup.or(current.ids, ids) : ids.clone())));
+  }
+
+  private static final class GrantedIds {
+
+    final int generation;
+    final long[] ids;
+
+    GrantedIds(int generation, long[] ids) {
+      this.generation = generation;
+      this.ids = ids;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.app.Activity;
+import android.support.annotation.StringRes;
+
+/**
+ * 显示rationale的方式，默认是{@link DialogRationalePresenter}.
+ *
+ * 可以通过{@link EasyPermissions#setRationalePresenter(RationalePresenter)}全局替换；
+ * 请求权限的Activity/Fragment自己实现此接口时优先使用它，例如用Snackbar或页面内的View说明，不弹出窗口。
+ * 只在主线程调用。
+ */
+public interface RationalePresenter {
+
+  /**
+   * 显示rationale，用户选择后调用{@code callback}的一个方法，只调用一次
+   *
+   * @param positiveButton 确定按钮的文字
+   * @param negativeButton 取消按钮的文字
+   * @return false 没有显示(例如同一个请求的rationale已经在显示)，这次请求按取消处理，
+   * 和系统中断请求一样回调空结果，不要再调用{@code callback}
+   */
+  boolean showRationale(Activity activity, int requestCode, String rationale,
+      @StringRes int positiveButton, @StringRes int negativeButton, Callback callback);
+
+  interface Callback {
+
+    /**
+     * 这次请求的权限，用于识别重复的请求
+     */
+    String[] getPermissions();
+
+    /**
+     * 用户同意，继续请求权限
+     */
+    void onRationaleAccepted();
+
+    /**
+     * 用户拒绝，当作权限被拒绝处理
+     */
+    void onRationaleDeclined();
+
+    /**
+     * rationale没有得到回答就被关闭(如Activity销毁)，和系统中断请求一样回调空结果
+     */
+    void onRationaleCancelled();
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.os.Bundle;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把调用者的requestCode(任意int或String)映射到一个小范围内的系统requestCode.
+ *
+ * 系统限制权限请求的requestCode只能用低8位，startActivityForResult只能用低16位；
+ * 特殊权限原来固定使用{@link EasyPermissions#SYSTEM_ALERT_WINDOW}等，容易和宿主的其他请求冲突。
+ * 这里从一个固定的号段中分配短期使用的系统requestCode，结果返回时再映射回原来的key并释放。
+ * 号段内按下标直接查找，不装箱，不遍历。号段只在结果返回时释放；用完时回收分配超过{@link #EXPIRE_NANOS}
+ * 的位置(宿主已经销毁或者没有转发结果)，没有可以回收的则分配失败，不会覆盖进行中的请求。
+ *
+ * 进程被杀后可以通过{@link #save(Bundle)}、{@link #restore(Bundle)}恢复，只在新进程中的号段为空时恢复。
+ * 每个位置还记录了请求开始的{@link System#nanoTime()}，供{@link PermissionMetrics}计算耗时，不保存；
+ * 以及只请求了部分权限时原来的完整权限列表，用来还原完整的结果；
+ * 以及一个long掩码：权限请求时是请求前各权限的rationale状态，用来区分普通拒绝和永久拒绝；
+ * 特殊权限批量请求时是已经打开过设置页的权限。
+ */
+final class RequestCodeMultiplexer {
+
+  /** 权限请求使用0xC0~0xFF，宿主自己的权限请求不要使用这个范围 */
+  static final RequestCodeMultiplexer PERMISSIONS = new RequestCodeMultiplexer("permissions", 0xC0);
+  /** 特殊权限等startActivityForResult使用0xEA00~0xEA3F */
+  static final RequestCodeMultiplexer ACTIVITY_RESULTS =
+      new RequestCodeMultiplexer("activity_results", 0xEA00);
+
+  static final int SIZE = 64;
+  /** 号段用完时，分配超过这个时间还没有结果的位置可以回收 */
+  static final long EXPIRE_NANOS = TimeUnit.MINUTES.toNanos(30);
+
+  private static final String KEY_PREFIX = "pub.devrel.easypermissions.mux.";
+  // 区分保存的状态来自哪个进程，同一个进程中的状态以内存中的为准
+  private static final long SESSION = new Random().nextLong();
+
+  private final String name;
+  private final int base;
+
+  private long used;// 第i位表示base+i已分配
+  private int cursor;
+  private boolean touched;// 分配或恢复过
+  private final long[] allocatedAt = new long[SIZE];// System.nanoTime()
+  private final int[] keys = new int[SIZE];
+  private final String[] tags = new String[SIZE];
+  private final long[] startTimes = new long[SIZE];// 0表示没有记录
+  private final String[][] perms = new String[SIZE][];
+  private final long[][] masks = new long[SIZE][];
+
+  RequestCodeMultiplexer(String name, int base) {
+    this.name = name;
+    this.base = base;
+  }
+
+  /**
+   * 为调用者的{@code key}分配一个系统requestCode
+   *
+   * @param startNanos 请求开始的时间，不统计时为0
+   */
+  synchronized int allocate(int key, long startNanos) {
+    return allocate(key, null, null, startNanos);
+  }
+
+  /**
+   * @param allPerms 调用者请求的全部权限，实际只请求了其中未授权的部分；全部请求时为null
+   * @param rationaleMask 第i位表示请求前第i个实际请求的权限需要显示rationale，见{@link Bits}
+   */
+  synchronized int allocate(int key, String[] allPerms, long[] rationaleMask, long startNanos) {
+    int slot = nextSlot();
+    keys[slot] = key;
+    tags[slot] = null;
+    startTimes[slot] = startNanos;
+    perms[slot] = allPerms;
+    masks[slot] = rationaleMask;
+    return base + slot;
+  }
+
+  /**
+   * 为字符串{@code tag}分配一个系统requestCode，用于库内部的请求
+   */
+  synchronized int allocate(String tag, long startNanos) {
+    return allocate(tag, 0, null, null, startNanos);
+  }
+
+  /**
+   * 库内部的请求，同时记录调用者的{@code key}
+   */
+  synchronized int allocate(String tag, int key, String[] allPerms, long[] mask,
+      long startNanos) {
+    int slot = nextSlot();
+    keys[slot] = key;
+    tags[slot] = tag;
+    startTimes[slot] = startNanos;
+    perms[slot] = allPerms;
+    masks[slot] = mask;
+    return base + slot;
+  }
+
+  /**
+   * {@code code}是否是当前分配出去的系统requestCode
+   */
+  synchronized boolean contains(int code) {
+    int slot = code - base;
+    return slot >= 0 && slot < SIZE && (used & (1L << slot)) != 0;
+  }
+
+  /**
+   * 分配时的int key，需要先用{@link #contains(int)}判断
+   */
+  synchronized int keyOf(int code) {
+    return keys[code - base];
+  }
+
+  /**
+   * 分配时的String tag，用int key分配的返回null
+   */
+  synchronized String tagOf(int code) {
+    return tags[code - base];
+  }
+
+  /**
+   * 分配时记录的开始时间，没有记录返回0
+   */
+  synchronized long startOf(int code) {
+    return startTimes[code - base];
+  }
+
+  /**
+   * 分配时的完整权限列表，没有则返回null
+   */
+  synchronized String[] permsOf(int code) {
+    return perms[code - base];
+  }
+
+  /**
+   * 分配时记录的掩码，没有则返回null
+   */
+  synchronized long[] maskOf(int code) {
+    return masks[code - base];
+  }
+
+  synchronized void release(int code) {
+    int slot = code - base;
+    if (slot >= 0 && slot < SIZE) {
+      used &= ~(1L << slot);
+      tags[slot] = null;
+      perms[slot] = null;
+      masks[slot] = null;
+    }
+  }
+
+  synchronized void save(Bundle outState) {
+    outState.putLong(KEY_PREFIX + name + ".session", SESSION);
+    outState.putLong(KEY_PREFIX + name + ".used", used);
+    outState.putInt(KEY_PREFIX + name + ".cursor", cursor);
+    // Bundle只保存引用，复制一份，之后的分配和释放不影响保存的状态
+    outState.putIntArray(KEY_PREFIX + name + ".keys", keys.clone());
+    outState.putStringArray(KEY_PREFIX + name + ".tags", tags.clone());
+    for (long bits = used; bits != 0; bits &= bits - 1) {
+      int slot = Long.numberOfTrailingZeros(bits);
+      if (perms[slot] != null) {
+        outState.putStringArray(KEY_PREFIX + name + ".perms." + slot, perms[slot]);
+      }
+      if (masks[slot] != null) {
+        outState.putLongArray(KEY_PREFIX + name + ".masks." + slot, masks[slot]);
+      }
+    }
+  }
+
+  /**
+   * 进程被杀后恢复保存的分配. 只在号段还没有分配或恢复过时恢复：同一个进程保存的状态可能已经过时，
+   * 号段是进程内共享的，多个Activity保存的状态只恢复第一个
+   */
+  synchronized void restore(Bundle savedState) {
+    if (touched || savedState.getLong(KEY_PREFIX + name + ".session", SESSION) == SESSION) {
+      return;
+    }
+    int[] savedKeys = savedState.getIntArray(KEY_PREFIX + name + ".keys");
+    String[] savedTags = savedState.getStringArray(KEY_PREFIX + name + ".tags");
+    if (savedKeys == null || savedTags == null
+        || savedKeys.length != SIZE || savedTags.length != SIZE) {
+      return;
+    }
+
+    long restored = savedState.getLong(KEY_PREFIX + name + ".used");
+    long now = System.nanoTime();
+    for (long bits = restored; bits != 0; bits &= bits - 1) {
+      int slot = Long.numberOfTrailingZeros(bits);
+      keys[slot] = savedKeys[slot];
+      tags[slot] = savedTags[slot];
+      startTimes[slot] = 0;// nanoTime在新进程中没有意义
+      allocatedAt[slot] = now;
+      perms[slot] = savedState.getStringArray(KEY_PREFIX + name + ".perms." + slot);
+      masks[slot] = savedState.getLongArray(KEY_PREFIX + name + ".masks." + slot);
+    }
+    used = restored;
+    touched = true;
+    cursor = savedState.getInt(KEY_PREFIX + name + ".cursor") & (SIZE - 1);
+  }
+
+  /**
+   * @throws IllegalStateException 号段已经用完，并且没有过期的位置
+   */
+  private int nextSlot() {
+    long now = System.nanoTime();
+    if (used == -1L) {
+      expire(now);
+    }
+
+    // 从cursor开始找第一个空位
+    long rotated = Long.rotateRight(~used, cursor);
+    if (rotated == 0) {
+      throw new IllegalStateException("All " + SIZE + " " + name
+          + " request codes are in use, results of earlier requests were not delivered");
+    }
+    int slot = (Long.numberOfTrailingZeros(rotated) + cursor) & (SIZE - 1);
+    used |= 1L << slot;
+    touched = true;
+    allocatedAt[slot] = now;
+    cursor = (slot + 1) & (SIZE - 1);
+    return slot;
+  }
+
+  /**
+   * 释放分配超过{@link #EXPIRE_NANOS}的位置，它们的结果之后返回时不再映射
+   */
+  private void expire(long now) {
+    for (int slot = 0; slot < SIZE; slot++) {
+      if (now - allocatedAt[slot] > EXPIRE_NANOS) {
+        release(base + slot);
+      }
+    }
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.app.AppOpsManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.Process;
+import android.provider.Settings;
+import android.support.v4.util.ArrayMap;
+import android.util.Log;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * 需要打开设置页申请的特殊权限.
+ *
+ * 每个特殊权限以设置页的action作为名字，和普通权限一样传给{@link EasyPermissions}；
+ * 描述包括检查是否授权、打开设置页的Intent、{@link AfterPermissionGranted}使用的requestCode。
+ * 内置了悬浮窗、修改系统设置、使用情况访问、通知使用权、安装未知应用、忽略电池优化，
+ * 其他的可以通过{@link #register(SpecialPermission)}添加。
+ */
+public abstract class SpecialPermission {
+
+  private static final String TAG = "SpecialPermission";
+
+  public static final String SYSTEM_ALERT_WINDOW = Settings.ACTION_MANAGE_OVERLAY_PERMISSION;
+  public static final String WRITE_SETTINGS = Settings.ACTION_MANAGE_WRITE_SETTINGS;
+  // 以下和Settings中的常量相同，部分在compileSdkVersion 23中还没有
+  public static final String USAGE_ACCESS = "android.settings.USAGE_ACCESS_SETTINGS";
+  public static final String NOTIFICATION_LISTENER =
+      "android.settings.ACTION_NOTIFICATION_LISTENER_SETTINGS";
+  public static final String INSTALL_UNKNOWN_APPS = "android.settings.MANAGE_UNKNOWN_APP_SOURCES";
+  public static final String IGNORE_BATTERY_OPTIMIZATIONS =
+      "android.settings.REQUEST_IGNORE_BATTERY_OPTIMIZATIONS";
+
+  // 写时复制，读取不加锁
+  private static volatile ArrayMap<String, SpecialPermission> registry = createBuiltIns();
+
+  private final String name;
+  private final String manifestPermission;
+  private final int requestCode;
+  private final int minSdkVersion;
+  // 只有这一个权限的数组，回调时不再分配
+  final String[] asArray;
+
+  /**
+   * @param name 设置页的action，也是请求时使用的权限名
+   * @param manifestPermission AndroidManifest中声明的权限，没有为null
+   * @param requestCode 结果回调和{@link AfterPermissionGranted}使用的requestCode，低16位
+   * @param minSdkVersion 低于此版本时不需要申请，总是认为已授权
+   */
+  protected SpecialPermission(String name, String manifestPermission, int requestCode,
+      int minSdkVersion) {
+    if ((requestCode & 0xffff0000) != 0) {
+      throw new IllegalArgumentException("requestCode must use the lower 16 bits");
+    }
+    this.name = name;
+    this.manifestPermission = manifestPermission;
+    this.requestCode = requestCode;
+    this.minSdkVersion = minSdkVersion;
+    this.asArray = new String[] { name };
+  }
+
+  public final String getName() {
+    return name;
+  }
+
+  public final String getManifestPermission() {
+    return manifestPermission;
+  }
+
+  public final int getRequestCode() {
+    return requestCode;
+  }
+
+  public final int getMinSdkVersion() {
+    return minSdkVersion;
+  }
+
+  /**
+   * 是否已授权，低于{@link #getMinSdkVersion()}时总是true
+   */
+  public final boolean isGranted(Context context) {
+    return Build.VERSION.SDK_INT < minSdkVersion || check(context);
+  }
+
+  /**
+   * 只在{@link Build.VERSION#SDK_INT} >= {@link #getMinSdkVersion()}时调用；
+   * 使用了更高版本的API时，方法内仍然需要判断版本，lint不会跟踪到{@link #isGranted(Context)}中的判断
+   */
+  protected abstract boolean check(Context context);
+
+  /**
+   * 打开设置页的Intent，默认是带有当前包名的{@link #getName()}
+   */
+  public Intent newIntent(Context context) {
+    Intent intent = new Intent(name);
+    intent.setData(Uri.parse("package:" + context.getPackageName()));
+    return intent;
+  }
+
+  /**
+   * 添加或者替换同名的特殊权限
+   */
+  public static synchronized void register(SpecialPermission permission) {
+    ArrayMap<String, SpecialPermission> map = new ArrayMap<>(registry.size() + 1);
+    map.putAll(registry);
+    map.put(permission.name, permission);
+    registry = map;
+    PermissionGroup.onSpecialRegistered(permission.name);
+  }
+
+  /**
+   * 生成了{@link PermissionIndex}时，{@code name}也可以是Manifest中声明的权限名
+   *
+   * @return 不是特殊权限返回null
+   */
+  public static SpecialPermission get(String name) {
+    SpecialPermission permission = registry.get(name);
+    if (permission == null && PermissionIndex.isSpecial(name)) {
+      permission = forManifestPermission(name);
+    }
+    return permission;
+  }
+
+  static SpecialPermission forRequestCode(int requestCode) {
+    for (SpecialPermission permission : registry.values()) {
+      if (permission.requestCode == requestCode) {
+        return permission;
+      }
+    }
+    return null;
+  }
+
+  static SpecialPermission forManifestPermission(String manifestPermission) {
+    for (SpecialPermission permission : registry.values()) {
+      if (manifestPermission.equals(permission.manifestPermission)) {
+        return permission;
+      }
+    }
+    return null;
+  }
+
+  private static ArrayMap<String, SpecialPermission> createBuiltIns() {
+    SpecialPermission[] builtIns = {
+        new SpecialPermission(SYSTEM_ALERT_WINDOW, "android.permission.SYSTEM_ALERT_WINDOW",
+            EasyPermissions.SYSTEM_ALERT_WINDOW, Build.VERSION_CODES.M) {
+          @Override protected boolean check(Context context) {
+            // 版本在isGranted中已经判断过，这里再判断一次让lint知道调用是安全的
+            return Build.VERSION.SDK_INT < Build.VERSION_CODES.M
+                || Settings.canDrawOverlays(context);
+          }
+        },
+        new SpecialPermission(WRITE_SETTINGS, "android.permission.WRITE_SETTINGS",
+            EasyPermissions.WRITE_SETTINGS, Build.VERSION_CODES.M) {
+          @Override protected boolean check(Context context) {
+            return Build.VERSION.SDK_INT < Build.VERSION_CODES.M
+                || Settings.System.canWrite(context);
+          }
+        },
+        new SpecialPermission(USAGE_ACCESS, "android.permission.PACKAGE_USAGE_STATS",
+            EasyPermissions.USAGE_ACCESS, Build.VERSION_CODES.LOLLIPOP) {
+          @Override protected boolean check(Context context) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+              return true;
+            }
+            AppOpsManager ops = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
+            return ops.checkOpNoThrow(AppOpsManager.OPSTR_GET_USAGE_STATS, Process.myUid(),
+                context.getPackageName()) == AppOpsManager.MODE_ALLOWED;
+          }
+
+          @Override public Intent newIntent(Context context) {
+            return new Intent(USAGE_ACCESS);// 不支持指定包名
+          }
+        },
+        // 通知使用权由Service声明，没有uses-permission
+        new SpecialPermission(NOTIFICATION_LISTENER, null, EasyPermissions.NOTIFICATION_LISTENER,
+            Build.VERSION_CODES.JELLY_BEAN_MR2) {
+          @Override protected boolean check(Context context) {
+            String listeners = Settings.Secure.getString(context.getContentResolver(),
+                "enabled_notification_listeners");
+            if (listeners == null) {
+              return false;
+            }
+            // 以':'分隔的组件名，包名需要完全相同，不能只匹配前缀
+            String packageName = context.getPackageName();
+            for (String flattened : listeners.split(":")) {
+              ComponentName component = ComponentName.unflattenFromString(flattened);
+              if (component != null && packageName.equals(component.getPackageName())) {
+                return true;
+              }
+            }
+            return false;
+          }
+
+          @Override public Intent newIntent(Context context) {
+            return new Intent(NOTIFICATION_LISTENER);
+          }
+        },
+        new SpecialPermission(INSTALL_UNKNOWN_APPS, "android.permission.REQUEST_INSTALL_PACKAGES",
+            EasyPermissions.INSTALL_UNKNOWN_APPS, 26) {// Android 8.0
+          @Override protected boolean check(Context context) {
+            return canRequestPackageInstalls(context);
+          }
+        },
+        new SpecialPermission(IGNORE_BATTERY_OPTIMIZATIONS,
+            "android.permission.REQUEST_IGNORE_BATTERY_OPTIMIZATIONS",
+            EasyPermissions.IGNORE_BATTERY_OPTIMIZATIONS, Build.VERSION_CODES.M) {
+          @Override protected boolean check(Context context) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+              return true;
+            }
+            PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+            return pm.isIgnoringBatteryOptimizations(context.getPackageName());
+          }
+        },
+    };
+
+    ArrayMap<String, SpecialPermission> map = new ArrayMap<>(builtIns.length);
+    for (SpecialPermission permission : builtIns) {
+      map.put(permission.name, permission);
+    }
+    return map;
+  }
+
+  /**
+   * {@code PackageManager#canRequestPackageInstalls()}是API 26的方法，compileSdkVersion 23中没有，通过反射调用
+   */
+  private static boolean canRequestPackageInstalls(Context context) {
+    try {
+      Method method = context.getPackageManager().getClass().getMethod("canRequestPackageInstalls");
+      return (Boolean) method.invoke(context.getPackageManager());
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      Log.w(TAG, "canRequestPackageInstalls", e);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pub.devrel.easypermissions;
+
+import android.app.Activity;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentActivity;
+import android.support.v4.app.FragmentManager;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+/**
+ * 等待结果的请求者，宿主Activity重建后重新查找.
+ *
+ * {@link #release()}之后不再强引用绑定在Activity上的请求者(Activity、Fragment、{@link PermissionHost.Provider}等)，
+ * 只保留弱引用，以及在新的Activity中查找它需要的类型和Fragment的tag/id；
+ * 不绑定在Activity上的请求者(如回调对象)一直强引用到结果返回。只在主线程使用。
+ */
+final class TargetRef {
+
+  /** 请求者自己的requestCode */
+  final int requestCode;
+
+  private Object target;
+  private final WeakReference<Object> ref;
+  private final Class<?> type;
+  private final String fragmentTag;
+  private final int fragmentId;
+
+  TargetRef(Object target, int requestCode) {
+    this.requestCode = requestCode;
+    this.target = target;
+    this.ref = new WeakReference<>(target);
+    this.type = target.getClass();
+    this.fragmentTag = target instanceof Fragment ? ((Fragment) target).getTag() : null;
+    this.fragmentId = target instanceof Fragment ? ((Fragment) target).getId() : 0;
+  }
+
+  /**
+   * 请求者，已被回收返回null
+   */
+  Object get() {
+    Object strong = target;
+    return strong != null ? strong : ref.get();
+  }
+
+  /**
+   * 宿主可能重建，不再强引用绑定在Activity上的请求者
+   */
+  void release() {
+    if (target != null && PermissionHost.of(target) != null) {
+      target = null;
+    }
+  }
+
+  /**
+   * 结果到达时的请求者. 原来的请求者不属于{@code activity}时，重新绑定为新的Activity，
+   * 或者新Activity中(包括子Fragment中)tag/id相同的Fragment，找不到返回null
+   */
+  Object resolve(Activity activity) {
+    Object current = get();
+    if (current != null) {
+      PermissionHost<Object> host = PermissionHost.of(current);
+      if (host == null || host.getActivity(current) == activity) {
+        return current;
+      }
+    }
+    if (activity == null) {
+      return null;
+    }
+
+    if (Activity.class.isAssignableFrom(type)) {
+      return type.isInstance(activity) ? activity : null;
+    }
+    if ((fragmentTag != null || fragmentId != 0) && activity instanceof FragmentActivity) {
+      return findFragment(((FragmentActivity) activity).getSupportFragmentManager());
+    }
+    return null;
+  }
+
+  /**
+   * 在{@code fm}中查找，没有再依次查找已添加的Fragment的子FragmentManager
+   */
+  private Fragment findFragment(FragmentManager fm) {
+    Fragment fragment = fragmentTag != null ? fm.findFragmentByTag(fragmentTag)
+        : fm.findFragmentById(fragmentId);
+    if (type.isInstance(fragment)) {
+      return fragment;
+    }
+
+    List<Fragment> fragments = fm.getFragments();// 可能为null，也可能有null元素
+    if (fragments != null) {
+      for (int i = 0; i < fragments.size(); i++) {
+        Fragment parent = fragments.get(i);
+        if (parent != null && parent.isAdded()) {
+          Fragment found = findFragment(parent.getChildFragmentManager());
+          if (found != null) {
+            return found;
+          }
+        }
+      }
+    }
+    return null;
+  }
+}